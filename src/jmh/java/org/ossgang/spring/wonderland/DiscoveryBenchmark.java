@@ -0,0 +1,99 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of the profile discovery on a {@link SyntheticClassPath}. Every invocation uses a fresh class loader,
+ * so that classes loaded by a previous invocation do not make the reflective scan look cheaper than it is.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DiscoveryBenchmark {
+
+    private static final Collection<String> PACKAGES = Collections.singleton(SyntheticClassPath.PACKAGE);
+    private static final Collection<String> XML_LOCATIONS = Collections.singleton(SyntheticClassPath.XML_LOCATION);
+
+    @Param({ "1000", "10000" })
+    public int classCount;
+
+    @Param({ "10" })
+    public int xmlFileCount;
+
+    private SyntheticClassPath classPath;
+
+    @Setup
+    public void generateClassPath() {
+        classPath = SyntheticClassPath.generate(classCount, xmlFileCount);
+    }
+
+    @TearDown
+    public void deleteClassPath() {
+        classPath.close();
+    }
+
+    @Benchmark
+    public Set<String> annotationProfileFinder() throws IOException {
+        try (URLClassLoader classLoader = classPath.newClassLoader()) {
+            return new AnnotationProfileFinder(classLoader).discoverSpringProfilesIn(PACKAGES);
+        }
+    }
+
+    @Benchmark
+    public Set<String> classFileProfileFinder() throws IOException {
+        try (URLClassLoader classLoader = classPath.newClassLoader()) {
+            return new ClassFileProfileFinder(classLoader).discoverSpringProfilesIn(PACKAGES);
+        }
+    }
+
+    @Benchmark
+    public Set<String> xmlProfileFinder() throws IOException {
+        try (URLClassLoader classLoader = classPath.newClassLoader()) {
+            return new XmlProfileFinder(classLoader).discoverSpringProfilesIn(XML_LOCATIONS);
+        }
+    }
+
+    @Benchmark
+    public ProfileRegistry collectProfiles() throws IOException {
+        try (URLClassLoader classLoader = classPath.newClassLoader()) {
+            return WonderlandContextSelector.collectProfiles(
+                    Arrays.asList(SyntheticClassPath.PACKAGE, SyntheticClassPath.XML_LOCATION),
+                    Arrays.asList(new IndexedProfileFinder(classLoader), new XmlProfileFinder(classLoader)),
+                    DiscoveryListener.NONE).join();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Cost of indexing the discovered profiles, building the {@link SelectionModel} shown to the user, selecting the
+ * profiles with a prefix or below a node of the profile tree and previewing the sources a selection activates (one
+ * source per profile with a small expression, as after every click in the selection dialog).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SelectionBenchmark {
+
+    @Param({ "100", "10000" })
+    public int profileCount;
+
+    private List<String> profiles;
+    private List<String> defaultProfiles;
+    private ProfileRegistry registry;
+    private ActivationPreview activationPreview;
+
+    @Setup
+    public void generateProfiles() {
+        profiles = IntStream.range(0, profileCount)
+                .mapToObj(i -> i % 10 == 0 ? "uncategorized" + i : SyntheticClassPath.profile(i) + "." + i)
+                .collect(toList());
+        defaultProfiles = IntStream.range(0, 50).mapToObj(SyntheticClassPath::profile).collect(toList());
+        registry = ProfileRegistry.of(profiles);
+        ProfileSourceIndex sources = new ProfileSourceIndex();
+        for (int i = 0; i < profiles.size(); i++) {
+            String expression = i % 3 == 0 ? profiles.get(i)
+                    : profiles.get(i) + " & !" + profiles.get((i + 1) % profiles.size());
+            sources.profileFound("benchmark", expression, ProfileSource.ofClass("Configuration" + i));
+        }
+        activationPreview = ActivationPreview.of(registry, sources);
+    }
+
+    @Benchmark
+    public ProfileRegistry indexProfiles() {
+        return ProfileRegistry.of(profiles);
+    }
+
+    @Benchmark
+    public SelectionModel selectionModel() {
+        return SelectionModel.of(registry, defaultProfiles, true, false);
+    }
+
+    @Benchmark
+    public SortedSet<WonderlandProfile> profilesWithPrefix() {
+        return registry.profilesWithPrefix("variant1");
+    }
+
+    @Benchmark
+    public boolean activatesAnything() {
+        return activationPreview.activatesAnything(defaultProfiles);
+    }
+
+    @Benchmark
+    public Object activatedCountsByKind() {
+        return activationPreview.activatedCountsByKind(defaultProfiles);
+    }
+
+    @Benchmark
+    public List<WonderlandProfile> profilesBelow() {
+        return registry.getTree().node("category1").get().getProfilesEndingWith("1");
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.context.annotation.Profile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * A generated classpath for the benchmarks: one directory and one jar, each holding half of the {@code @Profile}
+ * annotated classes below {@value #PACKAGE} and as many classes without profiles in a noise package, plus large
+ * Spring XML files with one nested {@code <beans>} element per profile.
+ */
+final class SyntheticClassPath implements Closeable {
+
+    static final String PACKAGE = "org.ossgang.synthetic";
+    static final String XML_LOCATION = "classpath*:org/ossgang/synthetic/xml/*.xml";
+
+    private static final String NOISE_PACKAGE = "org.ossgang.noise";
+    private static final String PROFILE_DESCRIPTOR = "L" + Profile.class.getName().replace('.', '/') + ";";
+    private static final int CATEGORIES = 50;
+    private static final int VARIANTS = 7;
+    private static final int BEANS_PER_PROFILE = 20;
+
+    private final Path root;
+    private final URL[] urls;
+
+    private SyntheticClassPath(Path root, URL[] urls) {
+        this.root = root;
+        this.urls = urls;
+    }
+
+    static SyntheticClassPath generate(int classCount, int xmlFileCount) {
+        try {
+            Path root = Files.createTempDirectory("wonderland-benchmark");
+            Path directory = Files.createDirectory(root.resolve("classes"));
+            Path jar = root.resolve("classes.jar");
+            try (JarOutputStream jarStream = new JarOutputStream(Files.newOutputStream(jar))) {
+                for (int i = 0; i < classCount; i++) {
+                    String profiledName = PACKAGE.replace('.', '/') + "/p" + (i % 100) + "/Profiled" + i;
+                    String noiseName = NOISE_PACKAGE.replace('.', '/') + "/n" + (i % 100) + "/Noise" + i;
+                    if (i % 2 == 0) {
+                        write(directory.resolve(profiledName + ".class"), classFile(profiledName, i));
+                        write(directory.resolve(noiseName + ".class"), classFile(noiseName, -1));
+                    } else {
+                        add(jarStream, profiledName + ".class", classFile(profiledName, i));
+                        add(jarStream, noiseName + ".class", classFile(noiseName, -1));
+                    }
+                }
+            }
+            for (int i = 0; i < xmlFileCount; i++) {
+                Path xml = directory.resolve(PACKAGE.replace('.', '/') + "/xml/beans" + i + ".xml");
+                Files.createDirectories(xml.getParent());
+                try (Writer writer = Files.newBufferedWriter(xml, StandardCharsets.UTF_8)) {
+                    writeXml(writer, i);
+                }
+            }
+            return new SyntheticClassPath(root, new URL[] { directory.toUri().toURL(), jar.toUri().toURL() });
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to generate the synthetic classpath", e);
+        }
+    }
+
+    URLClassLoader newClassLoader() {
+        return new URLClassLoader(urls, SyntheticClassPath.class.getClassLoader());
+    }
+
+    static String profile(int index) {
+        return "category" + (index % CATEGORIES) + ".variant" + (index % VARIANTS);
+    }
+
+    private static byte[] classFile(String internalName, int profileIndex) {
+        ClassWriter writer = new ClassWriter(0);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, internalName, null,
+                "java/lang/Object", null);
+        if (profileIndex >= 0) {
+            annotateWithProfile(writer.visitAnnotation(PROFILE_DESCRIPTOR, true), profile(profileIndex));
+        }
+        for (int method = 0; method < 5; method++) {
+            MethodVisitor visitor = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "bean" + method,
+                    "()Ljava/lang/Object;", null, null);
+            if (profileIndex >= 0 && method == 0) {
+                annotateWithProfile(visitor.visitAnnotation(PROFILE_DESCRIPTOR, true), profile(profileIndex + 1));
+            }
+            visitor.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void annotateWithProfile(AnnotationVisitor annotation, String profile) {
+        AnnotationVisitor value = annotation.visitArray("value");
+        value.visit(null, profile);
+        value.visitEnd();
+        annotation.visitEnd();
+    }
+
+    private static void writeXml(Writer writer, int fileIndex) throws IOException {
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<beans xmlns=\"http://www.springframework.org/schema/beans\">\n");
+        for (int category = 0; category < CATEGORIES; category++) {
+            writer.write("  <beans profile=\"xml" + fileIndex + "." + profile(category) + "\">\n");
+            for (int bean = 0; bean < BEANS_PER_PROFILE; bean++) {
+                writer.write("    <bean id=\"bean" + category + "_" + bean + "\" class=\"java.lang.Object\">\n");
+                writer.write("      <property name=\"value\" value=\"" + bean + "\"/>\n");
+                writer.write("    </bean>\n");
+            }
+            writer.write("  </beans>\n");
+        }
+        writer.write("</beans>\n");
+    }
+
+    private static void write(Path path, byte[] content) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+
+    private static void add(JarOutputStream jarStream, String name, byte[] content) throws IOException {
+        jarStream.putNextEntry(new JarEntry(name));
+        jarStream.write(content);
+        jarStream.closeEntry();
+    }
+
+    @Override
+    public void close() {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to delete " + root, e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Answers which of the discovered sources a candidate selection activates, without starting a Spring context. The
+ * profile expressions of every source are compiled once against the discovered profiles, so evaluating a selection
+ * is a few bit tests per source, fast enough to run on every click in the selection dialog.
+ */
+public final class ActivationPreview {
+
+    private final ProfileRegistry profiles;
+    private final List<ProfileSource> sources;
+    private final List<Predicate<BitSet>> conditions;
+
+    private ActivationPreview(ProfileRegistry profiles, List<ProfileSource> sources,
+                              List<Predicate<BitSet>> conditions) {
+        this.profiles = profiles;
+        this.sources = sources;
+        this.conditions = conditions;
+    }
+
+    public static ActivationPreview of(ProfileRegistry profiles, ProfileSourceIndex sourceIndex) {
+        requireNonNull(profiles, "profiles must not be null");
+        requireNonNull(sourceIndex, "sourceIndex must not be null");
+        ImmutableList.Builder<ProfileSource> sources = ImmutableList.builder();
+        ImmutableList.Builder<Predicate<BitSet>> conditions = ImmutableList.builder();
+        sourceIndex.getConditions().forEach((source, expressions) -> {
+            sources.add(source);
+            conditions.add(expressions.stream().map(expression -> expression.compile(profiles))
+                    .reduce(Predicate::or).orElse(active -> false));
+        });
+        return new ActivationPreview(profiles, sources.build(), conditions.build());
+    }
+
+    /**
+     * Whether any source with a profile condition was discovered, i.e. whether the preview can tell anything.
+     */
+    public boolean hasSources() {
+        return !sources.isEmpty();
+    }
+
+    public int getSourceCount() {
+        return sources.size();
+    }
+
+    public Set<ProfileSource> activatedSources(Collection<String> selection) {
+        BitSet active = profiles.bitsOf(selection);
+        Set<ProfileSource> activated = new LinkedHashSet<>();
+        for (int index = 0; index < sources.size(); index++) {
+            if (conditions.get(index).test(active)) {
+                activated.add(sources.get(index));
+            }
+        }
+        return activated;
+    }
+
+    /**
+     * The number of activated sources of each kind, e.g. configuration classes and XML files. Kinds without any
+     * activated source are left out.
+     */
+    public Map<ProfileSource.Kind, Integer> activatedCountsByKind(Collection<String> selection) {
+        BitSet active = profiles.bitsOf(selection);
+        Map<ProfileSource.Kind, Integer> counts = new EnumMap<>(ProfileSource.Kind.class);
+        for (int index = 0; index < sources.size(); index++) {
+            if (conditions.get(index).test(active)) {
+                counts.merge(sources.get(index).getKind(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    public boolean activatesAnything(Collection<String> selection) {
+        BitSet active = profiles.bitsOf(selection);
+        return conditions.stream().anyMatch(condition -> condition.test(active));
+    }
+}
@@ -18,60 +18,119 @@
 
 package org.ossgang.spring.wonderland;
 
-import com.google.common.reflect.ClassPath;
-import com.google.common.reflect.ClassPath.ClassInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Profile;
 
 import java.io.IOException;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static com.google.common.base.Predicates.not;
+import static java.util.Objects.requireNonNull;
+import static org.ossgang.spring.wonderland.DiscoveryTiming.timed;
 
 public class AnnotationProfileFinder implements WonderlandProfileFinder {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationProfileFinder.class);
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private final ClassLoader classLoader;
+
+    public AnnotationProfileFinder() {
+        this(AnnotationProfileFinder.class.getClassLoader());
+    }
+
+    public AnnotationProfileFinder(ClassLoader classLoader) {
+        this.classLoader = requireNonNull(classLoader, "classLoader must not be null");
+    }
+
     @Override
     public Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
-        try {
-            Collection<Class<?>> matchedClasses = ClassPath.from(AnnotationProfileFinder.class.getClassLoader())
-                    .getAllClasses()
-                    .stream().filter(classInfo -> matchesAnyPrefix(classInfo.getPackageName(), prefixes))
-                    .map(tryOptional(ClassInfo::load)).filter(Optional::isPresent).map(Optional::get)
-                    .collect(Collectors.toList());
+        return discoverSpringProfilesIn(prefixes, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(Collection<String> prefixes, DiscoveryListener listener) {
+        String finder = getClass().getSimpleName();
+        PrefixTrie packages = PrefixTrie.ofPackagePaths(prefixes);
+        List<ClassPathEntry> entries = timed(listener, finder, DiscoveryPhase.ENUMERATE,
+                () -> ClassPathEntry.of(classLoader));
+        List<String> classNames = timed(listener, finder, DiscoveryPhase.SCAN, () -> entries.stream()
+                .flatMap(entry -> classNamesIn(entry, packages))
+                .distinct()
+                .collect(Collectors.toList()));
+        listener.counted(finder, DiscoveryCounter.CLASSES_SCANNED, classNames.size());
 
-            List<Method> matchedMethods = matchedClasses.stream().flatMap(this::getMethodsFromClass)
+        Collection<Class<?>> matchedClasses = timed(listener, finder, DiscoveryPhase.LOAD, () -> classNames.stream()
+                .map(tryOptional(this::loadClass)).filter(Optional::isPresent).map(Optional::get)
+                .collect(Collectors.toList()));
+        listener.counted(finder, DiscoveryCounter.CLASSES_LOADED, matchedClasses.size());
+
+        AtomicInteger skipped = new AtomicInteger(classNames.size() - matchedClasses.size());
+        Set<String> profiles = timed(listener, finder, DiscoveryPhase.REFLECT, () -> {
+            List<Method> matchedMethods = matchedClasses.stream()
+                    .flatMap(clazz -> getMethodsFromClass(clazz, skipped))
                     .collect(Collectors.toList());
 
-            Set<String> profiles = new HashSet<>();
-            profiles.addAll(profilesFromAnnotations(matchedClasses));
-            profiles.addAll(profilesFromAnnotations(matchedMethods));
-            return profiles;
+            Set<String> discovered = new HashSet<>();
+            discovered.addAll(profilesFromAnnotations(matchedClasses,
+                    clazz -> ProfileSource.ofClass(clazz.getName()), finder, listener));
+            discovered.addAll(profilesFromAnnotations(matchedMethods,
+                    method -> ProfileSource.ofMethod(method.getDeclaringClass().getName(), method.getName()), finder,
+                    listener));
+            return discovered;
+        });
+        listener.counted(finder, DiscoveryCounter.CLASSES_SKIPPED, skipped.get());
+        return profiles;
+    }
+
+    private static Stream<String> classNamesIn(ClassPathEntry entry, PrefixTrie packages) {
+        List<String> classNames = new ArrayList<>();
+        try {
+            entry.forEachResource(packages::mayContainMatchesBelow,
+                    resourceName -> ClassFileProfileFinder.isClassFileInMatchingPackage(resourceName, packages),
+                    (resourceName, content) -> classNames.add(resourceName
+                            .substring(0, resourceName.length() - CLASS_FILE_SUFFIX.length()).replace('/', '.')));
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            LOGGER.warn("Unable to scan classpath entry " + entry + " for classes", e);
         }
+        return classNames.stream();
     }
 
-    private Stream<? extends Method> getMethodsFromClass(Class<?> clazz) {
+    private Class<?> loadClass(String className) {
+        try {
+            return classLoader.loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new NoClassDefFoundError(className);
+        }
+    }
+
+    private Stream<? extends Method> getMethodsFromClass(Class<?> clazz, AtomicInteger skipped) {
         try {
             return Stream.of(clazz.getDeclaredMethods());
         } catch (NoClassDefFoundError e) {
+            skipped.incrementAndGet();
             return Stream.empty();
         }
     }
 
-    private static Set<String> profilesFromAnnotations(Collection<? extends AnnotatedElement> annotations) {
-        return annotations.stream().map(element -> element.getAnnotation(Profile.class))
-                .filter(not(Objects::isNull))
-                .flatMap(annotation -> Stream.of(annotation.value()))
-                .collect(Collectors.toSet());
-    }
-
-    private static boolean matchesAnyPrefix(String txt, Collection<String> prefixes) {
-        return prefixes.stream().anyMatch(txt::startsWith);
+    private static <E extends AnnotatedElement> Set<String> profilesFromAnnotations(
+            Collection<E> annotations, Function<E, ProfileSource> sourceOf, String finder,
+            DiscoveryListener listener) {
+        Set<String> profiles = new HashSet<>();
+        annotations.stream().filter(element -> element.isAnnotationPresent(Profile.class)).forEach(element -> {
+            for (String profile : element.getAnnotation(Profile.class).value()) {
+                profiles.add(profile);
+                listener.profileFound(finder, profile, sourceOf.apply(element));
+            }
+        });
+        return profiles;
     }
 
     private static <I, R> Function<I, Optional<R>> tryOptional(Function<I, R> mapper) {
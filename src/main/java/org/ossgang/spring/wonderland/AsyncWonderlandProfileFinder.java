@@ -0,0 +1,58 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.base.Throwables;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A {@link WonderlandProfileFinder} discovering its profiles without blocking the calling thread.
+ */
+public interface AsyncWonderlandProfileFinder extends WonderlandProfileFinder {
+
+    CompletableFuture<Set<String>> discoverSpringProfilesAsync(Collection<String> prefixes);
+
+    default CompletableFuture<Set<String>> discoverSpringProfilesAsync(Collection<String> prefixes,
+                                                                      DiscoveryListener listener) {
+        return discoverSpringProfilesAsync(prefixes);
+    }
+
+    @Override
+    default Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+        return await(discoverSpringProfilesAsync(prefixes));
+    }
+
+    @Override
+    default Set<String> discoverSpringProfilesIn(Collection<String> prefixes, DiscoveryListener listener) {
+        return await(discoverSpringProfilesAsync(prefixes, listener));
+    }
+
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
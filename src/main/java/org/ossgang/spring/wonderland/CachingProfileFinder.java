@@ -0,0 +1,426 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.ResourceUtils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+import static org.ossgang.spring.wonderland.DiscoveryTiming.timed;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Caches the profiles discovered by a delegate finder in a file, keyed by a fingerprint (path, size and modification
+ * time) of the classpath entries. For the finders of this library, the profiles are cached per jar or directory,
+ * so a changed entry only causes that entry to be scanned again, or an entry whose XML files import a changed file.
+ * Any other finder is cached as a whole and runs again as soon as any classpath entry changed. Each classpath gets its
+ * own cache file, so applications sharing the cache directory do not evict each other's entries.
+ * <p>
+ * The cache is enabled for the default finders of {@link WonderlandContextSelector} by setting the system property
+ * {@value #CACHE_PROPERTY} to {@code true} (caching in {@code ~/.wonderland/cache}) or to a cache directory.
+ */
+public class CachingProfileFinder implements WonderlandProfileFinder {
+
+    public static final String CACHE_PROPERTY = "wonderland.discovery.cache";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingProfileFinder.class);
+
+    private static final String CACHE_FILE_SUFFIX = ".profiles-cache";
+    private static final String CLASSPATH_KEY = "*classpath*";
+    private static final char FIELD_SEPARATOR = '\t';
+    private static final char SOURCE_SEPARATOR = '\u001F';
+    private static final char IMPORT_SEPARATOR = '\u001E';
+    private static final int CACHE_FORMAT_VERSION = 3;
+    private static final String UNKNOWN_FINGERPRINT = "unknown";
+
+    private final WonderlandProfileFinder delegate;
+    private final Path cacheDirectory;
+    private final ClassLoader classLoader;
+
+    public CachingProfileFinder(WonderlandProfileFinder delegate) {
+        this(delegate, defaultCacheDirectory());
+    }
+
+    public CachingProfileFinder(WonderlandProfileFinder delegate, Path cacheDirectory) {
+        this(delegate, cacheDirectory, CachingProfileFinder.class.getClassLoader());
+    }
+
+    public CachingProfileFinder(WonderlandProfileFinder delegate, Path cacheDirectory, ClassLoader classLoader) {
+        this.delegate = requireNonNull(delegate, "delegate must not be null");
+        this.cacheDirectory = requireNonNull(cacheDirectory, "cacheDirectory must not be null");
+        this.classLoader = requireNonNull(classLoader, "classLoader must not be null");
+    }
+
+    static List<WonderlandProfileFinder> withConfiguredCache(Collection<WonderlandProfileFinder> finders) {
+        String configuration = System.getProperty(CACHE_PROPERTY);
+        if (configuration == null || configuration.trim().isEmpty() || "false".equalsIgnoreCase(configuration)) {
+            return new ArrayList<>(finders);
+        }
+        Path directory = "true".equalsIgnoreCase(configuration) ? defaultCacheDirectory() : Paths.get(configuration);
+        return finders.stream()
+                .map(finder -> finder instanceof WatchingProfileFinder ? finder
+                        : new CachingProfileFinder(finder, directory))
+                .collect(toList());
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+        return discoverSpringProfilesIn(prefixes, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(Collection<String> prefixes, DiscoveryListener listener) {
+        String finder = DiscoveryTiming.finderName(delegate);
+        ClassLoader entriesClassLoader = delegate instanceof ClassPathEntryProfileFinder
+                ? ((ClassPathEntryProfileFinder) delegate).getClassLoader() : classLoader;
+        List<ClassPathEntry> entries = timed(listener, finder, DiscoveryPhase.ENUMERATE,
+                () -> ClassPathEntry.of(entriesClassLoader));
+        Path cacheFile = cacheDirectory.resolve(cacheFileName(prefixes, entries));
+        Map<String, CachedProfiles> cache = timed(listener, finder, DiscoveryPhase.CACHE, () -> readCache(cacheFile));
+        Map<String, CachedProfiles> updated = new ConcurrentHashMap<>();
+
+        Set<String> profiles;
+        if (delegate instanceof ClassPathEntryProfileFinder) {
+            profiles = discoverPerEntry((ClassPathEntryProfileFinder) delegate, entries, prefixes, cache, updated,
+                    listener);
+        } else {
+            profiles = discoverForClassPath(entries, prefixes, cache, updated, listener);
+        }
+
+        if (!updated.equals(cache)) {
+            timed(listener, finder, DiscoveryPhase.CACHE, () -> {
+                writeCache(cacheFile, updated);
+                return cacheFile;
+            });
+        }
+        return profiles;
+    }
+
+    WonderlandProfileFinder getDelegate() {
+        return delegate;
+    }
+
+    private Set<String> discoverPerEntry(ClassPathEntryProfileFinder finder, List<ClassPathEntry> entries,
+                                         Collection<String> prefixes, Map<String, CachedProfiles> cache,
+                                         Map<String, CachedProfiles> updated, DiscoveryListener listener) {
+        String finderName = finder.getClass().getSimpleName();
+        Set<String> profiles = ConcurrentHashMap.newKeySet();
+        AtomicInteger hits = new AtomicInteger();
+        entries.parallelStream().forEach(entry -> {
+            String key = entry.getFile().getPath();
+            String fingerprint = timed(listener, finderName, DiscoveryPhase.CACHE, () -> fingerprintOf(entry));
+            CachedProfiles cached = cache.get(key);
+            if (cached != null && isValidWithImports(cached, fingerprint)) {
+                hits.incrementAndGet();
+                cached.replaySources(finderName, listener);
+            } else {
+                SourceRecorder recorder = new SourceRecorder();
+                Set<String> discovered = finder.discoverSpringProfilesIn(entry, prefixes,
+                        DiscoveryListener.combined(listener, recorder));
+                cached = new CachedProfiles(withImports(fingerprint, entry, recorder.importedFiles), discovered,
+                        recorder.sources);
+            }
+            updated.put(key, cached);
+            profiles.addAll(cached.profiles);
+        });
+        listener.counted(finderName, DiscoveryCounter.CACHE_HITS, hits.get());
+        LOGGER.debug("Reused cached profiles of " + hits + " out of " + entries.size() + " classpath entries for "
+                + finderName);
+        return profiles;
+    }
+
+    private Set<String> discoverForClassPath(List<ClassPathEntry> entries, Collection<String> prefixes,
+                                             Map<String, CachedProfiles> cache, Map<String, CachedProfiles> updated,
+                                             DiscoveryListener listener) {
+        String finderName = DiscoveryTiming.finderName(delegate);
+        String fingerprint = timed(listener, finderName, DiscoveryPhase.CACHE, () -> classPathFingerprint(entries));
+
+        CachedProfiles cached = cache.get(CLASSPATH_KEY);
+        if (cached == null || !isValid(cached, fingerprint)) {
+            SourceRecorder recorder = new SourceRecorder();
+            Set<String> discovered = delegate.discoverSpringProfilesIn(prefixes,
+                    DiscoveryListener.combined(listener, recorder));
+            cached = new CachedProfiles(fingerprint, discovered, recorder.sources);
+        } else {
+            cached.replaySources(finderName, listener);
+            listener.counted(finderName, DiscoveryCounter.CACHE_HITS, 1);
+            LOGGER.debug("Reused cached profiles for " + delegate.getClass().getName());
+        }
+        updated.put(CLASSPATH_KEY, cached);
+        return new TreeSet<>(cached.profiles);
+    }
+
+    private static String classPathFingerprint(List<ClassPathEntry> entries) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        boolean fingerprintable = true;
+        for (ClassPathEntry entry : entries) {
+            String entryFingerprint = fingerprintOf(entry);
+            fingerprintable &= !UNKNOWN_FINGERPRINT.equals(entryFingerprint);
+            hasher.putString(entry.getFile().getPath(), StandardCharsets.UTF_8)
+                    .putString(entryFingerprint, StandardCharsets.UTF_8);
+        }
+        return fingerprintable ? hasher.hash().toString() : UNKNOWN_FINGERPRINT;
+    }
+
+    private String cacheFileName(Collection<String> prefixes, List<ClassPathEntry> entries) {
+        Hasher hasher = Hashing.sha256().newHasher().putInt(CACHE_FORMAT_VERSION)
+                .putString(delegate.getClass().getName(), StandardCharsets.UTF_8);
+        new TreeSet<>(prefixes).forEach(prefix -> hasher.putString(prefix, StandardCharsets.UTF_8).putChar('\n'));
+        entries.forEach(entry -> hasher.putString(entry.getFile().getPath(), StandardCharsets.UTF_8).putChar('\n'));
+        return delegate.getClass().getSimpleName() + "-" + hasher.hash().toString().substring(0, 16)
+                + CACHE_FILE_SUFFIX;
+    }
+
+    private static boolean isValid(CachedProfiles cached, String fingerprint) {
+        return !UNKNOWN_FINGERPRINT.equals(fingerprint) && cached.fingerprint.equals(fingerprint);
+    }
+
+    /**
+     * Whether the fingerprint of the entry and of the files outside of it imported by its XML files are unchanged.
+     */
+    private static boolean isValidWithImports(CachedProfiles cached, String fingerprint) {
+        List<String> fingerprints = Splitter.on(IMPORT_SEPARATOR).splitToList(cached.fingerprint);
+        if (UNKNOWN_FINGERPRINT.equals(fingerprint) || !fingerprints.get(0).equals(fingerprint)
+                || fingerprints.size() % 2 == 0) {
+            return false;
+        }
+        for (int i = 1; i < fingerprints.size(); i += 2) {
+            String importFingerprint = fingerprintOf(Paths.get(fingerprints.get(i)));
+            if (UNKNOWN_FINGERPRINT.equals(importFingerprint) || !importFingerprint.equals(fingerprints.get(i + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the paths and fingerprints of the imported files outside of the entry (their jar, for files in jars).
+     */
+    private static String withImports(String fingerprint, ClassPathEntry entry, Set<String> importedUrls) {
+        Path root = entry.getFile().toPath().toAbsolutePath().normalize();
+        Set<Path> imports = new TreeSet<>();
+        for (String url : importedUrls) {
+            Optional<Path> file = fileOf(url);
+            if (!file.isPresent()) {
+                return UNKNOWN_FINGERPRINT;
+            }
+            if (!file.get().startsWith(root)) {
+                imports.add(file.get());
+            }
+        }
+        StringBuilder fingerprints = new StringBuilder(fingerprint);
+        for (Path imported : imports) {
+            String importFingerprint = fingerprintOf(imported);
+            if (UNKNOWN_FINGERPRINT.equals(importFingerprint)) {
+                return UNKNOWN_FINGERPRINT;
+            }
+            fingerprints.append(IMPORT_SEPARATOR).append(imported).append(IMPORT_SEPARATOR).append(importFingerprint);
+        }
+        return fingerprints.toString();
+    }
+
+    private static Optional<Path> fileOf(String url) {
+        try {
+            URL fileUrl = new URL(url);
+            if (ResourceUtils.isJarURL(fileUrl)) {
+                fileUrl = ResourceUtils.extractArchiveURL(fileUrl);
+            }
+            return Optional.of(ResourceUtils.getFile(fileUrl).toPath().toAbsolutePath().normalize());
+        } catch (IOException e) {
+            LOGGER.debug("Unable to fingerprint the imported file " + url, e);
+            return Optional.empty();
+        }
+    }
+
+    private static String fingerprintOf(ClassPathEntry entry) {
+        return fingerprintOf(entry.getFile().toPath());
+    }
+
+    private static String fingerprintOf(Path path) {
+        try {
+            if (!Files.isDirectory(path)) {
+                return Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis();
+            }
+            long[] fingerprint = new long[3];
+            try (Stream<Path> files = Files.walk(path)) {
+                files.map(Path::toFile).filter(File::isFile).forEach(file -> {
+                    fingerprint[0]++;
+                    fingerprint[1] += file.length();
+                    fingerprint[2] = Math.max(fingerprint[2], file.lastModified());
+                });
+            }
+            return fingerprint[0] + ":" + fingerprint[1] + ":" + fingerprint[2];
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.debug("Unable to fingerprint " + path, e);
+            return UNKNOWN_FINGERPRINT;
+        }
+    }
+
+    private static Map<String, CachedProfiles> readCache(Path cacheFile) {
+        Map<String, CachedProfiles> cache = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(cacheFile, StandardCharsets.UTF_8)) {
+                List<String> fields = Splitter.on(FIELD_SEPARATOR).splitToList(line);
+                if (fields.size() >= 2) {
+                    cache.put(fields.get(0), CachedProfiles.parse(fields.get(1), fields.subList(2, fields.size())));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("No discovery cache at " + cacheFile);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Unable to read the discovery cache " + cacheFile + ", ignoring it", e);
+            cache.clear();
+        }
+        return cache;
+    }
+
+    private static void writeCache(Path cacheFile, Map<String, CachedProfiles> cache) {
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path temporaryFile = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(),
+                    ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, CachedProfiles> entry : cache.entrySet()) {
+                    writer.write(Joiner.on(FIELD_SEPARATOR).join(entry.getKey(), entry.getValue().fingerprint,
+                            entry.getValue().fields().toArray()));
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temporaryFile, cacheFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write the discovery cache " + cacheFile, e);
+        }
+    }
+
+    private static Path defaultCacheDirectory() {
+        return Paths.get(System.getProperty("user.home"), ".wonderland", "cache");
+    }
+
+    /**
+     * Records the reported profile sources, so that they can be cached and reported again on cache hits, and the
+     * imported files the cached profiles depend on.
+     */
+    private static final class SourceRecorder implements DiscoveryListener {
+        private final SetMultimap<String, ProfileSource> sources = Multimaps
+                .synchronizedSetMultimap(LinkedHashMultimap.create());
+        private final Set<String> importedFiles = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void profileFound(String finder, String profile, ProfileSource source) {
+            sources.put(profile, source);
+        }
+
+        @Override
+        public void fileImported(String finder, String url) {
+            importedFiles.add(url);
+        }
+    }
+
+    private static final class CachedProfiles {
+        private final String fingerprint;
+        private final Set<String> profiles;
+        private final SetMultimap<String, ProfileSource> sources;
+
+        private CachedProfiles(String fingerprint, Set<String> profiles, SetMultimap<String, ProfileSource> sources) {
+            this.fingerprint = fingerprint;
+            this.profiles = new TreeSet<>(profiles);
+            this.sources = ImmutableSetMultimap.copyOf(sources);
+        }
+
+        /**
+         * Parses the profile fields, each being a profile followed by its sources.
+         */
+        private static CachedProfiles parse(String fingerprint, List<String> fields) {
+            Set<String> profiles = new TreeSet<>();
+            SetMultimap<String, ProfileSource> sources = LinkedHashMultimap.create();
+            for (String field : fields) {
+                List<String> parts = Splitter.on(SOURCE_SEPARATOR).splitToList(field);
+                profiles.add(parts.get(0));
+                parts.subList(1, parts.size())
+                        .forEach(source -> sources.put(parts.get(0), ProfileSource.parse(source)));
+            }
+            return new CachedProfiles(fingerprint, profiles, sources);
+        }
+
+        private List<String> fields() {
+            return profiles.stream()
+                    .map(profile -> Joiner.on(SOURCE_SEPARATOR).join(Iterables.concat(ImmutableList.of(profile),
+                            sources.get(profile))))
+                    .collect(toList());
+        }
+
+        private void replaySources(String finder, DiscoveryListener listener) {
+            sources.forEach((profile, source) -> listener.profileFound(finder, profile, source));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CachedProfiles)) {
+                return false;
+            }
+            CachedProfiles that = (CachedProfiles) other;
+            return fingerprint.equals(that.fingerprint) && profiles.equals(that.profiles)
+                    && sources.equals(that.sources);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * fingerprint.hashCode() + profiles.hashCode()) + sources.hashCode();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.UrlResource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Support for starting the selector from a JDK class data sharing archive (AppCDS, JDK 13 or newer). Most of a cold
+ * start is spent loading classes: the classpath scanners, Spring's resource and XML stack, Swing, and the application
+ * classes declaring the profiles. A training run loads all of them once and dumps them into an archive when the JVM
+ * exits:
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=app.jsa -cp app.jar:lib/* org.ossgang.spring.wonderland.ClassDataSharing mpe cern
+ * </pre>
+ * The arguments are the profile scan locations, the defaults of {@link WonderlandContextSelector#create()} if none
+ * are given. The application is then started with the {@link #launchOptions(Path) options} reusing the archive. The
+ * classpath of the application must start with the classpath of the training run, and must consist of jars only:
+ * the JVM does not archive classes from directories.
+ */
+public final class ClassDataSharing {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassDataSharing.class);
+
+    private ClassDataSharing() {
+    }
+
+    public static void main(String[] args) {
+        train(args.length == 0 ? WonderlandContextSelector.create() : WonderlandContextSelector.create(args));
+    }
+
+    /**
+     * Runs the discovery of the given selector, loads the classes and parses the XML files declaring profiles, and
+     * builds the Swing selection dialog without showing it (just its components on headless machines).
+     */
+    public static void train(WonderlandContextSelector selector) {
+        requireNonNull(selector, "selector must not be null");
+        long start = System.nanoTime();
+        new SwingSelectionUi().prepare(selector.progressiveSelection());
+        long dialogPrepared = System.nanoTime();
+        int loaded = loadSources(selector.getProfileSources());
+        LOGGER.info("Discovered " + selector.getProfileRegistry().getProfileNames().size() + " profiles and prepared "
+                + "the selection dialog in " + TimeUnit.NANOSECONDS.toMillis(dialogPrepared - start) + " ms, loaded "
+                + loaded + " profile sources in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dialogPrepared)
+                + " ms");
+    }
+
+    /**
+     * The JVM options dumping the archive at the end of a training run.
+     */
+    public static List<String> trainingOptions(Path archive) {
+        requireNonNull(archive, "archive must not be null");
+        return ImmutableList.of("-XX:ArchiveClassesAtExit=" + archive);
+    }
+
+    /**
+     * The JVM options starting an application from the archive, none if it has not been trained yet. A JVM finding
+     * the archive unusable (e.g. because the classpath changed) warns and starts without it.
+     */
+    public static List<String> launchOptions(Path archive) {
+        requireNonNull(archive, "archive must not be null");
+        if (!Files.isRegularFile(archive)) {
+            LOGGER.info("No class data sharing archive at " + archive + ", starting without it");
+            return ImmutableList.of();
+        }
+        return ImmutableList.of("-XX:SharedArchiveFile=" + archive, "-Xshare:auto");
+    }
+
+    private static int loadSources(ProfileSourceIndex sources) {
+        ClassLoader classLoader = ClassDataSharing.class.getClassLoader();
+        XmlBeanDefinitionReader xmlReader = new XmlBeanDefinitionReader(new DefaultListableBeanFactory());
+        xmlReader.setBeanClassLoader(classLoader);
+        int loaded = 0;
+        for (ProfileSource source : sources.getConditions().keySet()) {
+            try {
+                switch (source.getKind()) {
+                case CLASS:
+                case METHOD:
+                    Class.forName(source.getLocation(), false, classLoader);
+                    break;
+                case XML_FILE:
+                    xmlReader.loadBeanDefinitions(new UrlResource(source.getLocation()));
+                    break;
+                default:
+                    continue;
+                }
+                loaded++;
+            } catch (Exception | LinkageError e) {
+                LOGGER.debug("Unable to load profile source " + source, e);
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+import static org.ossgang.spring.wonderland.DiscoveryTiming.timed;
+
+/**
+ * Discovers {@link org.springframework.context.annotation.Profile} values by reading the class files below the given
+ * package prefixes. In contrast to {@link AnnotationProfileFinder}, no class is loaded, so static initializers are
+ * not run and unresolvable dependencies do not matter.
+ * <p>
+ * The classpath roots are scanned in parallel. When running inside a {@link java.util.concurrent.ForkJoinPool} (e.g.
+ * as part of a {@link CompositeProfileFinder}), the work is confined to that pool.
+ */
+public class ClassFileProfileFinder implements ClassPathEntryProfileFinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassFileProfileFinder.class);
+
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private final ClassLoader classLoader;
+
+    public ClassFileProfileFinder() {
+        this(ClassFileProfileFinder.class.getClassLoader());
+    }
+
+    public ClassFileProfileFinder(ClassLoader classLoader) {
+        this.classLoader = requireNonNull(classLoader, "classLoader must not be null");
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+        return discoverSpringProfilesIn(prefixes, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(Collection<String> prefixes, DiscoveryListener listener) {
+        String finder = getClass().getSimpleName();
+        PrefixTrie packages = PrefixTrie.ofPackagePaths(prefixes);
+        Set<String> profiles = ConcurrentHashMap.newKeySet();
+        timed(listener, finder, DiscoveryPhase.ENUMERATE, () -> ClassPathEntry.of(classLoader)).parallelStream()
+                .forEach(entry -> profiles.addAll(profilesIn(entry, packages, finder, listener)));
+        return profiles;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(ClassPathEntry entry, Collection<String> prefixes) {
+        return discoverSpringProfilesIn(entry, prefixes, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(ClassPathEntry entry, Collection<String> prefixes,
+                                                DiscoveryListener listener) {
+        return profilesIn(entry, PrefixTrie.ofPackagePaths(prefixes), getClass().getSimpleName(), listener);
+    }
+
+    static Set<String> profilesIn(ClassPathEntry entry, PrefixTrie packages, String finder,
+                                  DiscoveryListener listener) {
+        return timed(listener, finder, DiscoveryPhase.SCAN, () -> scan(entry, packages, finder, listener));
+    }
+
+    private static Set<String> scan(ClassPathEntry entry, PrefixTrie packages, String finder,
+                                    DiscoveryListener listener) {
+        Set<String> profiles = new HashSet<>();
+        AtomicInteger scanned = new AtomicInteger();
+        try {
+            entry.forEachResource(packages::mayContainMatchesBelow,
+                    resourceName -> isClassFileInMatchingPackage(resourceName, packages),
+                    (resourceName, content) -> {
+                        scanned.incrementAndGet();
+                        try {
+                            ProfileClassVisitor.declarationsIn(content.read()).forEach((profile, source) -> {
+                                profiles.add(profile);
+                                listener.profileFound(finder, profile, source);
+                            });
+                        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                            LOGGER.debug("Skipping unreadable class file " + resourceName + " in " + entry, e);
+                        }
+                    });
+        } catch (IOException e) {
+            LOGGER.warn("Unable to scan classpath entry " + entry + " for profiles", e);
+        }
+        listener.counted(finder, DiscoveryCounter.CLASSES_SCANNED, scanned.get());
+        return profiles;
+    }
+
+    static boolean isClassFileInMatchingPackage(String resourceName, PrefixTrie packages) {
+        if (!resourceName.endsWith(CLASS_FILE_SUFFIX)) {
+            return false;
+        }
+        return packages.matchesPrefixOf(resourceName.substring(0, Math.max(resourceName.lastIndexOf('/'), 0)));
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.base.Splitter;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * A root of the classpath, either a jar file or a directory. Mirrors the way Guava's {@code ClassPath} collects its
+ * roots, but keeps them accessible so that discovery can be partitioned and filtered per root. The entries are
+ * enumerated by the finders of this library, which discover and cache the profiles per entry.
+ */
+public final class ClassPathEntry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassPathEntry.class);
+
+    private static final String JAVA_CLASS_PATH = "java.class.path";
+    private static final String PATH_SEPARATOR = "path.separator";
+
+    private final File file;
+
+    private ClassPathEntry(File file) {
+        this.file = file;
+    }
+
+    static List<ClassPathEntry> of(ClassLoader classLoader) {
+        Set<File> files = new LinkedHashSet<>();
+        for (File file : filesOf(classLoader)) {
+            collectWithManifestClassPath(file, files);
+        }
+        List<ClassPathEntry> entries = new ArrayList<>();
+        files.forEach(file -> entries.add(new ClassPathEntry(file)));
+        return entries;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isJar() {
+        return file.isFile();
+    }
+
+    InputStream openResource(String resourceName) throws IOException {
+        if (!isJar()) {
+            File resource = new File(file, resourceName);
+            return resource.isFile() ? Files.newInputStream(resource.toPath()) : null;
+        }
+        Optional<MappedJarFile> mappedJarFile = MappedJarFile.open(file);
+        if (mappedJarFile.isPresent()) {
+            try (MappedJarFile jarFile = mappedJarFile.get()) {
+                Optional<ResourceContent> content = jarFile.find(resourceName);
+                return content.isPresent() ? new ByteArrayInputStream(content.get().read()) : null;
+            }
+        }
+        JarFile jarFile = new JarFile(file);
+        JarEntry entry = jarFile.getJarEntry(resourceName);
+        if (entry == null) {
+            jarFile.close();
+            return null;
+        }
+        return new FilterInputStream(jarFile.getInputStream(entry)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    jarFile.close();
+                }
+            }
+        };
+    }
+
+    void forEachResource(Predicate<String> resourceFilter, ResourceConsumer consumer) throws IOException {
+        forEachResource(directory -> true, resourceFilter, consumer);
+    }
+
+    /**
+     * Visits the resources accepted by the resource filter whose directory is accepted by the directory filter (given
+     * the relative path without trailing slash). In directories, rejected subdirectories are not descended into; jars
+     * are read through a {@link MappedJarFile} where possible, so that entries of rejected directories are skipped in
+     * the central directory.
+     */
+    void forEachResource(Predicate<String> directoryFilter, Predicate<String> resourceFilter,
+                         ResourceConsumer consumer) throws IOException {
+        if (isJar()) {
+            Optional<MappedJarFile> mappedJarFile = MappedJarFile.open(file);
+            if (mappedJarFile.isPresent()) {
+                try (MappedJarFile jarFile = mappedJarFile.get()) {
+                    jarFile.forEach(directoryFilter, resourceFilter, consumer);
+                }
+                return;
+            }
+            LOGGER.debug("Unable to map " + file + ", reading it as a JarFile");
+            try (JarFile jarFile = new JarFile(file)) {
+                Enumeration<JarEntry> jarEntries = jarFile.entries();
+                while (jarEntries.hasMoreElements()) {
+                    JarEntry entry = jarEntries.nextElement();
+                    if (!entry.isDirectory() && directoryFilter.test(directoryOf(entry.getName()))
+                            && resourceFilter.test(entry.getName())) {
+                        consumer.accept(entry.getName(), () -> jarFile.getInputStream(entry));
+                    }
+                }
+            }
+        } else {
+            Path root = file.toPath();
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                    return directoryFilter.test(resourceNameOf(root, directory)) ? FileVisitResult.CONTINUE
+                            : FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+                    String resourceName = resourceNameOf(root, path);
+                    if (attributes.isRegularFile() && resourceFilter.test(resourceName)) {
+                        consumer.accept(resourceName, () -> Files.newInputStream(path));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) {
+                    LOGGER.debug("Unable to visit " + path, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static String directoryOf(String resourceName) {
+        return resourceName.substring(0, Math.max(resourceName.lastIndexOf('/'), 0));
+    }
+
+    private static String resourceNameOf(Path root, Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+
+    private static Set<File> filesOf(ClassLoader classLoader) {
+        Set<File> files = new LinkedHashSet<>();
+        if (classLoader.getParent() != null) {
+            files.addAll(filesOf(classLoader.getParent()));
+        }
+        if (classLoader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                toFile(url).ifPresent(files::add);
+            }
+        }
+        if (classLoader.equals(ClassLoader.getSystemClassLoader())) {
+            for (String path : Splitter.on(System.getProperty(PATH_SEPARATOR))
+                    .omitEmptyStrings().split(System.getProperty(JAVA_CLASS_PATH))) {
+                files.add(new File(path).getAbsoluteFile());
+            }
+        }
+        return files;
+    }
+
+    private static void collectWithManifestClassPath(File file, Set<File> files) {
+        File canonical = canonicalFileOf(file);
+        if (!canonical.exists() || !files.add(canonical) || !canonical.isFile()) {
+            return;
+        }
+        for (File referenced : manifestClassPathOf(canonical)) {
+            collectWithManifestClassPath(referenced, files);
+        }
+    }
+
+    private static List<File> manifestClassPathOf(File jar) {
+        List<File> referenced = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            Manifest manifest = jarFile.getManifest();
+            String classPath = manifest == null ? null
+                    : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if (classPath == null) {
+                return referenced;
+            }
+            for (String path : Splitter.on(' ').omitEmptyStrings().split(classPath)) {
+                try {
+                    toFile(new URL(jar.toURI().toURL(), path)).ifPresent(referenced::add);
+                } catch (MalformedURLException e) {
+                    LOGGER.debug("Invalid Class-Path entry '" + path + "' in " + jar, e);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Unable to read the manifest of " + jar, e);
+        }
+        return referenced;
+    }
+
+    private static Optional<File> toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new File(url.toURI()));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return Optional.of(new File(url.getPath()));
+        }
+    }
+
+    private static File canonicalFileOf(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    @FunctionalInterface
+    interface ResourceConsumer {
+        void accept(String resourceName, ResourceContent content) throws IOException;
+    }
+
+    /**
+     * The content of a visited resource, only valid while visiting it.
+     */
+    @FunctionalInterface
+    interface ResourceContent {
+        InputStream open() throws IOException;
+
+        default byte[] read() throws IOException {
+            try (InputStream stream = open()) {
+                return ByteStreams.toByteArray(stream);
+            }
+        }
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Runs several {@link WonderlandProfileFinder}s at the same time on a dedicated {@link ForkJoinPool} of bounded
+ * parallelism and merges their results. Finders partitioning their own work with parallel streams (like the
+ * classpath scanners of this library) share the same pool. {@link AsyncWonderlandProfileFinder}s are started
+ * through their asynchronous API.
+ * <p>
+ * The finders are given in priority order. A finder not completing within its deadline is reported to the
+ * {@link DiscoveryListener} and the discovery completes without its profiles (it keeps running in the background, but
+ * its result is discarded). Events of finders still running after the discovery completed are not reported to the
+ * listener anymore. Once an {@link #withAuthoritative(WonderlandProfileFinder) authoritative} finder and all
+ * finders of higher priority have answered, the lower priority finders are not waited for anymore.
+ * <p>
+ * The default parallelism is the number of available processors and can be overridden with the system property
+ * {@value #PARALLELISM_PROPERTY}. A default deadline for all finders (in milliseconds) can be set with
+ * {@value #TIMEOUT_PROPERTY}.
+ */
+public class CompositeProfileFinder implements AsyncWonderlandProfileFinder {
+
+    public static final String PARALLELISM_PROPERTY = "wonderland.discovery.parallelism";
+    public static final String TIMEOUT_PROPERTY = "wonderland.discovery.timeout";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompositeProfileFinder.class);
+
+    private static final ScheduledExecutorService DEADLINES = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("wonderland-discovery-deadlines").setDaemon(true).build());
+
+    private final List<WonderlandProfileFinder> finders;
+    private final int parallelism;
+    private final Duration defaultDeadline;
+    private final Map<WonderlandProfileFinder, Duration> deadlines;
+    private final Set<WonderlandProfileFinder> authoritative;
+
+    public CompositeProfileFinder(Collection<WonderlandProfileFinder> finders) {
+        this(finders, defaultParallelism());
+    }
+
+    public CompositeProfileFinder(Collection<WonderlandProfileFinder> finders, int parallelism) {
+        this(distinct(finders), parallelism, defaultDeadline().orElse(null), ImmutableMap.of(), ImmutableSet.of());
+    }
+
+    private CompositeProfileFinder(List<WonderlandProfileFinder> finders, int parallelism, Duration defaultDeadline,
+                                   Map<WonderlandProfileFinder, Duration> deadlines,
+                                   Set<WonderlandProfileFinder> authoritative) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive, but was " + parallelism);
+        }
+        this.finders = finders;
+        this.parallelism = parallelism;
+        this.defaultDeadline = defaultDeadline;
+        this.deadlines = deadlines;
+        this.authoritative = authoritative;
+    }
+
+    /**
+     * Bounds the time waited for each finder, counted from the start of the discovery.
+     */
+    public CompositeProfileFinder withDeadline(Duration deadline) {
+        return new CompositeProfileFinder(finders, parallelism, checkedDeadline(deadline), deadlines, authoritative);
+    }
+
+    /**
+     * Bounds the time waited for the given finder, overriding the {@link #withDeadline(Duration) default deadline}.
+     */
+    public CompositeProfileFinder withDeadline(WonderlandProfileFinder finder, Duration deadline) {
+        Map<WonderlandProfileFinder, Duration> newDeadlines = new IdentityHashMap<>(deadlines);
+        newDeadlines.put(checkedFinder(finder), checkedDeadline(deadline));
+        return new CompositeProfileFinder(finders, parallelism, defaultDeadline,
+                Collections.unmodifiableMap(newDeadlines), authoritative);
+    }
+
+    /**
+     * Completes the discovery as soon as the given finder and all finders of higher priority have answered, e.g. for
+     * a finder reading build-time indexes which are known to be complete.
+     */
+    public CompositeProfileFinder withAuthoritative(WonderlandProfileFinder finder) {
+        Set<WonderlandProfileFinder> newAuthoritative = Collections.newSetFromMap(new IdentityHashMap<>());
+        newAuthoritative.addAll(authoritative);
+        newAuthoritative.add(checkedFinder(finder));
+        return new CompositeProfileFinder(finders, parallelism, defaultDeadline, deadlines,
+                Collections.unmodifiableSet(newAuthoritative));
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> discoverSpringProfilesAsync(Collection<String> prefixes) {
+        return discoverSpringProfilesAsync(prefixes, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> discoverSpringProfilesAsync(Collection<String> prefixes,
+                                                                      DiscoveryListener discoveryListener) {
+        DetachableListener listener = new DetachableListener(discoveryListener);
+        Set<String> profiles = ConcurrentHashMap.newKeySet();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        CompletableFuture<Set<String>> result = new CompletableFuture<>();
+        List<CompletableFuture<Boolean>> answers = new ArrayList<>();
+        listener.findersStarted(finders.stream().map(DiscoveryTiming::finderName).collect(toList()));
+        for (WonderlandProfileFinder finder : finders) {
+            long start = System.nanoTime();
+            CompletableFuture<Boolean> answered = withDeadline(finder, discover(finder, prefixes, pool, listener),
+                    start, listener).thenApply(discovered -> {
+                        discovered.ifPresent(profiles::addAll);
+                        return discovered.isPresent();
+                    });
+            answers.add(answered);
+            if (authoritative.contains(finder)) {
+                CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+                    if (answered.join() && result.complete(ImmutableSet.copyOf(profiles))) {
+                        LOGGER.debug(DiscoveryTiming.finderName(finder) + " answered authoritatively, not waiting "
+                                + "for finders of lower priority");
+                    }
+                });
+            }
+        }
+        CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).whenComplete((done, exception) -> {
+            if (exception != null) {
+                result.completeExceptionally(exception);
+            } else {
+                result.complete(ImmutableSet.copyOf(profiles));
+            }
+        });
+        return result.whenComplete((done, exception) -> {
+            listener.detach();
+            pool.shutdown();
+        });
+    }
+
+    private static CompletableFuture<Set<String>> discover(WonderlandProfileFinder finder, Collection<String> prefixes,
+                                                           ForkJoinPool pool, DiscoveryListener listener) {
+        if (finder instanceof AsyncWonderlandProfileFinder) {
+            return CompletableFuture.supplyAsync(
+                    () -> ((AsyncWonderlandProfileFinder) finder).discoverSpringProfilesAsync(prefixes, listener), pool)
+                    .thenCompose(future -> future);
+        }
+        return CompletableFuture.supplyAsync(() -> finder.discoverSpringProfilesIn(prefixes, listener), pool);
+    }
+
+    /**
+     * The profiles of the discovery, or nothing if the finder's deadline passed first. The finder is reported to the
+     * listener as either completed or timed out, never both.
+     */
+    private CompletableFuture<Optional<Set<String>>> withDeadline(WonderlandProfileFinder finder,
+                                                                  CompletableFuture<Set<String>> discovery,
+                                                                  long start, DiscoveryListener listener) {
+        String finderName = DiscoveryTiming.finderName(finder);
+        Duration deadline = deadlines.getOrDefault(finder, defaultDeadline);
+        CompletableFuture<Optional<Set<String>>> bounded = new CompletableFuture<>();
+        AtomicBoolean settled = new AtomicBoolean();
+        ScheduledFuture<?> timeout = deadline == null ? null : DEADLINES.schedule(() -> {
+            if (settled.compareAndSet(false, true)) {
+                LOGGER.warn(finderName + " did not complete within " + deadline.toMillis()
+                        + " ms, continuing without its profiles");
+                listener.finderTimedOut(finderName, deadline.toNanos());
+                bounded.complete(Optional.empty());
+            }
+        }, deadline.toNanos(), TimeUnit.NANOSECONDS);
+        discovery.whenComplete((profiles, exception) -> {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            if (exception != null) {
+                bounded.completeExceptionally(exception);
+            } else {
+                listener.finderCompleted(finderName, System.nanoTime() - start, profiles);
+                bounded.complete(Optional.of(profiles));
+            }
+        });
+        return bounded;
+    }
+
+    private WonderlandProfileFinder checkedFinder(WonderlandProfileFinder finder) {
+        requireNonNull(finder, "finder must not be null");
+        if (finders.stream().noneMatch(candidate -> candidate == finder)) {
+            throw new IllegalArgumentException(finder + " is not one of the composed finders");
+        }
+        return finder;
+    }
+
+    private static Duration checkedDeadline(Duration deadline) {
+        requireNonNull(deadline, "deadline must not be null");
+        if (deadline.isNegative() || deadline.isZero()) {
+            throw new IllegalArgumentException("deadline must be positive, but was " + deadline);
+        }
+        return deadline;
+    }
+
+    private static List<WonderlandProfileFinder> distinct(Collection<WonderlandProfileFinder> finders) {
+        Set<WonderlandProfileFinder> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        ImmutableList.Builder<WonderlandProfileFinder> ordered = ImmutableList.builder();
+        finders.stream().filter(distinct::add).forEach(ordered::add);
+        return ordered.build();
+    }
+
+    /**
+     * Forwards events until {@link #detach() detached}; an event being forwarded meanwhile is waited for.
+     */
+    private static final class DetachableListener implements DiscoveryListener {
+        private final DiscoveryListener delegate;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private boolean detached;
+
+        private DetachableListener(DiscoveryListener delegate) {
+            this.delegate = delegate;
+        }
+
+        void detach() {
+            lock.writeLock().lock();
+            try {
+                detached = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void forward(Consumer<DiscoveryListener> event) {
+            lock.readLock().lock();
+            try {
+                if (!detached) {
+                    event.accept(delegate);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void findersStarted(List<String> finders) {
+            forward(listener -> listener.findersStarted(finders));
+        }
+
+        @Override
+        public void phaseCompleted(String finder, DiscoveryPhase phase, long durationNanos) {
+            forward(listener -> listener.phaseCompleted(finder, phase, durationNanos));
+        }
+
+        @Override
+        public void counted(String finder, DiscoveryCounter counter, long amount) {
+            forward(listener -> listener.counted(finder, counter, amount));
+        }
+
+        @Override
+        public void finderCompleted(String finder, long durationNanos, Set<String> profiles) {
+            forward(listener -> listener.finderCompleted(finder, durationNanos, profiles));
+        }
+
+        @Override
+        public void finderTimedOut(String finder, long deadlineNanos) {
+            forward(listener -> listener.finderTimedOut(finder, deadlineNanos));
+        }
+
+        @Override
+        public void profileFound(String finder, String profile, ProfileSource source) {
+            forward(listener -> listener.profileFound(finder, profile, source));
+        }
+
+        @Override
+        public void fileImported(String finder, String url) {
+            forward(listener -> listener.fileImported(finder, url));
+        }
+    }
+
+    static int defaultParallelism() {
+        return Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static Optional<Duration> defaultDeadline() {
+        Long millis = Long.getLong(TIMEOUT_PROPERTY);
+        return millis == null || millis <= 0 ? Optional.empty() : Optional.of(Duration.ofMillis(millis));
+    }
+}
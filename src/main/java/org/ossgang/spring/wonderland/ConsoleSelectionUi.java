@@ -0,0 +1,139 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.primitives.Ints;
+import org.ossgang.spring.wonderland.SelectionModel.Category;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Asks for the profiles on the terminal: one prompt per category (variant name or number, {@code -} to disable it)
+ * and one yes/no question per uncategorized profile. Pressing enter keeps the default, end of input cancels.
+ */
+public class ConsoleSelectionUi implements WonderlandSelectionUi {
+
+    private static final String DISABLED = "-";
+
+    private final BufferedReader input;
+    private final PrintStream output;
+
+    public ConsoleSelectionUi() {
+        this(System.in, System.out);
+    }
+
+    public ConsoleSelectionUi(InputStream input, PrintStream output) {
+        requireNonNull(input, "input must not be null");
+        this.input = new BufferedReader(new InputStreamReader(input, Charset.defaultCharset()));
+        this.output = requireNonNull(output, "output must not be null");
+    }
+
+    @Override
+    public Optional<List<String>> select(SelectionModel model) {
+        output.println("Welcome to the Wonderland! Press enter to keep the [default].");
+        List<String> selection = new ArrayList<>();
+        try {
+            for (Category category : model.getCategories()) {
+                String variant = askForVariant(category, model.isDisablingAllowed());
+                if (variant == null) {
+                    return Optional.empty();
+                }
+                if (!DISABLED.equals(variant)) {
+                    selection.add(category.profile(variant));
+                }
+            }
+            for (String profile : model.getUncategorized()) {
+                Boolean enabled = askForEnabling(profile, model.isEnabledByDefault(profile));
+                if (enabled == null) {
+                    return Optional.empty();
+                }
+                if (enabled) {
+                    selection.add(profile);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read the profile selection", e);
+        }
+        return Optional.of(selection);
+    }
+
+    private String askForVariant(Category category, boolean disablingAllowed) throws IOException {
+        List<String> variants = category.getVariants();
+        String preselected = category.isActiveByDefault() ? category.getPreselectedVariant() : DISABLED;
+        output.println(category.getName() + ":");
+        for (int i = 0; i < variants.size(); i++) {
+            output.println("  " + (i + 1) + ") " + variants.get(i));
+        }
+        while (true) {
+            output.print((disablingAllowed ? "Variant or " + DISABLED + " to disable" : "Variant") + " ["
+                    + preselected + "]: ");
+            output.flush();
+            String answer = input.readLine();
+            if (answer == null) {
+                return null;
+            }
+            answer = answer.trim();
+            if (answer.isEmpty()) {
+                return preselected;
+            }
+            if (variants.contains(answer) || (disablingAllowed && DISABLED.equals(answer))) {
+                return answer;
+            }
+            Integer number = Ints.tryParse(answer);
+            if (number != null && number >= 1 && number <= variants.size()) {
+                return variants.get(number - 1);
+            }
+            output.println("Unknown variant '" + answer + "'");
+        }
+    }
+
+    private Boolean askForEnabling(String profile, boolean enabledByDefault) throws IOException {
+        while (true) {
+            output.print(profile + (enabledByDefault ? " [Y/n]: " : " [y/N]: "));
+            output.flush();
+            String answer = input.readLine();
+            if (answer == null) {
+                return null;
+            }
+            switch (answer.trim().toLowerCase(Locale.ROOT)) {
+            case "":
+                return enabledByDefault;
+            case "y":
+            case "yes":
+                return true;
+            case "n":
+            case "no":
+                return false;
+            default:
+                output.println("Please answer yes or no");
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+/**
+ * The counters of a profile discovery reported to a {@link DiscoveryListener}.
+ */
+public enum DiscoveryCounter {
+    CLASSES_SCANNED,
+    CLASSES_LOADED,
+    CLASSES_SKIPPED,
+    INDEXES_READ,
+    XML_FILES_PARSED,
+    CACHE_HITS;
+
+    String displayName() {
+        return name().toLowerCase().replace('_', ' ');
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Receives the instrumentation events of a profile discovery, identifying the reporting finder by its simple class
+ * name. Events may arrive concurrently from several threads; phase durations are reported per unit of work, so a
+ * phase running in parallel reports the sum over all threads.
+ */
+public interface DiscoveryListener {
+
+    DiscoveryListener NONE = new DiscoveryListener() {
+    };
+
+    /**
+     * The given finders were started; each of them reports {@link #finderCompleted} or {@link #finderTimedOut} later.
+     */
+    default void findersStarted(List<String> finders) {
+    }
+
+    default void phaseCompleted(String finder, DiscoveryPhase phase, long durationNanos) {
+    }
+
+    default void counted(String finder, DiscoveryCounter counter, long amount) {
+    }
+
+    default void finderCompleted(String finder, long durationNanos, Set<String> profiles) {
+    }
+
+    /**
+     * The finder did not complete within its deadline; the discovery went on without its profiles.
+     */
+    default void finderTimedOut(String finder, long deadlineNanos) {
+    }
+
+    /**
+     * A profile was found in the given source. Reported once per declaration, so a profile declared in several
+     * sources is reported several times.
+     */
+    default void profileFound(String finder, String profile, ProfileSource source) {
+    }
+
+    /**
+     * A file outside of the scanned one was read, e.g. an XML file imported by a scanned one: the profiles found in
+     * the scanned file depend on its content.
+     */
+    default void fileImported(String finder, String url) {
+    }
+
+    static DiscoveryListener combined(DiscoveryListener... listeners) {
+        List<DiscoveryListener> all = ImmutableList.copyOf(listeners);
+        return new DiscoveryListener() {
+            @Override
+            public void findersStarted(List<String> finders) {
+                all.forEach(listener -> listener.findersStarted(finders));
+            }
+
+            @Override
+            public void phaseCompleted(String finder, DiscoveryPhase phase, long durationNanos) {
+                all.forEach(listener -> listener.phaseCompleted(finder, phase, durationNanos));
+            }
+
+            @Override
+            public void counted(String finder, DiscoveryCounter counter, long amount) {
+                all.forEach(listener -> listener.counted(finder, counter, amount));
+            }
+
+            @Override
+            public void finderCompleted(String finder, long durationNanos, Set<String> profiles) {
+                all.forEach(listener -> listener.finderCompleted(finder, durationNanos, profiles));
+            }
+
+            @Override
+            public void finderTimedOut(String finder, long deadlineNanos) {
+                all.forEach(listener -> listener.finderTimedOut(finder, deadlineNanos));
+            }
+
+            @Override
+            public void profileFound(String finder, String profile, ProfileSource source) {
+                all.forEach(listener -> listener.profileFound(finder, profile, source));
+            }
+
+            @Override
+            public void fileImported(String finder, String url) {
+                all.forEach(listener -> listener.fileImported(finder, url));
+            }
+        };
+    }
+}
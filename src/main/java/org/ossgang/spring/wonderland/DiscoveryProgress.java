@@ -0,0 +1,110 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the profiles of a running discovery as the finders report them, so that a {@link ProgressiveSelection} can
+ * offer them before the slowest finder completed. Profiles reported through {@link #profileFound} appear immediately,
+ * those of finders not reporting their sources when the finder completes.
+ */
+final class DiscoveryProgress implements DiscoveryListener {
+
+    private final Set<String> profiles = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger settledFinders = new AtomicInteger();
+    private final AtomicInteger startedFinders = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private ProfileRegistry snapshot = ProfileRegistry.of(profiles);
+    private long snapshotVersion;
+
+    @Override
+    public void findersStarted(List<String> finders) {
+        startedFinders.addAndGet(finders.size());
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void finderCompleted(String finder, long durationNanos, Set<String> discoveredProfiles) {
+        discoveredProfiles.forEach(this::add);
+        settle();
+    }
+
+    @Override
+    public void finderTimedOut(String finder, long deadlineNanos) {
+        settle();
+    }
+
+    @Override
+    public void profileFound(String finder, String profile, ProfileSource source) {
+        add(profile);
+    }
+
+    /**
+     * Increases whenever profiles were added or finders started or settled.
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    int getProfileCount() {
+        return profiles.size();
+    }
+
+    int getStartedFinders() {
+        return startedFinders.get();
+    }
+
+    int getSettledFinders() {
+        return settledFinders.get();
+    }
+
+    /**
+     * The profiles reported so far, indexed again only if new ones arrived since the last call.
+     */
+    synchronized ProfileRegistry getProfiles() {
+        long currentVersion = version.get();
+        if (currentVersion != snapshotVersion) {
+            snapshot = ProfileRegistry.of(profiles);
+            snapshotVersion = currentVersion;
+        }
+        return snapshot;
+    }
+
+    private void add(String profile) {
+        for (String name : WonderlandContextSelector.profileNamesIn(profile)) {
+            if (profiles.add(name)) {
+                version.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Counts each finder instance once: finders of the same class have the same name, and a finder is reported either
+     * as completed or as timed out.
+     */
+    private void settle() {
+        settledFinders.incrementAndGet();
+        version.incrementAndGet();
+    }
+}
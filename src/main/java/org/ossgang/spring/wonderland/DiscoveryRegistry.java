@@ -0,0 +1,158 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Shares discoveries within the JVM: callers asking for the same scan locations with the same finders on the same
+ * class loader get the discovery started by the first of them, whether it is still running or already complete. The
+ * discovery settings read from system properties ({@value CachingProfileFinder#CACHE_PROPERTY},
+ * {@value CompositeProfileFinder#PARALLELISM_PROPERTY} and {@value CompositeProfileFinder#TIMEOUT_PROPERTY}) are part
+ * of the key, so changing them starts a new discovery.
+ * <p>
+ * Only the finders of this library reading the class path entries of a class loader are known to give the same
+ * result for the same input, so discoveries involving other finders (including the {@link WatchingProfileFinder}) are
+ * never shared. The discoveries are held per class loader in a {@link WeakHashMap} and keyed by names only, so they
+ * are released together with the class loader. Failed discoveries are forgotten, so the next caller tries again.
+ * Sharing can be switched off with the system property {@value #SHARED_PROPERTY}{@code =false}.
+ */
+final class DiscoveryRegistry<T> {
+
+    static final String SHARED_PROPERTY = "wonderland.discovery.shared";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiscoveryRegistry.class);
+
+    private static final List<String> SETTING_PROPERTIES = ImmutableList.of(CachingProfileFinder.CACHE_PROPERTY,
+            CompositeProfileFinder.PARALLELISM_PROPERTY, CompositeProfileFinder.TIMEOUT_PROPERTY);
+
+    private final Map<ClassLoader, ConcurrentMap<Key, T>> discoveries = Collections
+            .synchronizedMap(new WeakHashMap<>());
+    private final Function<T, CompletableFuture<?>> completion;
+
+    /**
+     * @param completion the future completing with the given discovery
+     */
+    DiscoveryRegistry(Function<T, CompletableFuture<?>> completion) {
+        this.completion = completion;
+    }
+
+    /**
+     * The discovery of the given locations with the given finders, started with the given supplier unless it can be
+     * shared with an earlier caller.
+     */
+    T discover(Collection<String> locations, Collection<WonderlandProfileFinder> finders, Supplier<T> discovery) {
+        Optional<ClassLoader> classLoader = sharedClassLoaderOf(finders);
+        if (!classLoader.isPresent() || "false".equalsIgnoreCase(System.getProperty(SHARED_PROPERTY))) {
+            return discovery.get();
+        }
+        Key key = new Key(locations, finders);
+        ConcurrentMap<Key, T> discoveriesOfClassLoader = discoveries
+                .computeIfAbsent(classLoader.get(), loader -> new ConcurrentHashMap<>());
+        AtomicBoolean started = new AtomicBoolean();
+        T shared = discoveriesOfClassLoader.computeIfAbsent(key, newKey -> {
+            started.set(true);
+            return discovery.get();
+        });
+        if (started.get()) {
+            completion.apply(shared).whenComplete((result, exception) -> {
+                if (exception != null) {
+                    discoveriesOfClassLoader.remove(key, shared);
+                }
+            });
+        } else {
+            LOGGER.debug("Sharing the discovery of " + key);
+        }
+        return shared;
+    }
+
+    /**
+     * The number of class loaders with shared discoveries, for tests.
+     */
+    int classLoaderCount() {
+        return discoveries.size();
+    }
+
+    private static Optional<ClassLoader> sharedClassLoaderOf(Collection<WonderlandProfileFinder> finders) {
+        ClassLoader classLoader = null;
+        for (WonderlandProfileFinder finder : finders) {
+            if (!(finder instanceof ClassPathEntryProfileFinder)) {
+                return Optional.empty();
+            }
+            ClassLoader finderClassLoader = ((ClassPathEntryProfileFinder) finder).getClassLoader();
+            if (classLoader != null && classLoader != finderClassLoader) {
+                return Optional.empty();
+            }
+            classLoader = finderClassLoader;
+        }
+        return Optional.ofNullable(classLoader);
+    }
+
+    private static final class Key {
+        private final List<String> locations;
+        private final List<String> finders;
+        private final List<String> settings;
+
+        private Key(Collection<String> locations, Collection<WonderlandProfileFinder> finders) {
+            this.locations = ImmutableList.copyOf(locations);
+            this.finders = finders.stream().map(finder -> finder.getClass().getName())
+                    .collect(ImmutableList.toImmutableList());
+            this.settings = SETTING_PROPERTIES.stream().map(property -> property + "=" + System.getProperty(property))
+                    .collect(ImmutableList.toImmutableList());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return locations.equals(key.locations) && finders.equals(key.finders) && settings.equals(key.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(locations, finders, settings);
+        }
+
+        @Override
+        public String toString() {
+            return locations + " with " + finders;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+
+/**
+ * A snapshot of the {@link DiscoveryStatistics} of a profile discovery, keyed by the simple class names of the
+ * finders. Phase durations are summed over all threads and can therefore exceed the duration of their finder.
+ */
+public final class DiscoveryReport {
+
+    private final Duration totalDuration;
+    private final Map<String, Duration> finderDurations;
+    private final Map<String, Map<DiscoveryPhase, Duration>> phaseDurations;
+    private final Map<String, Map<DiscoveryCounter, Long>> counters;
+    private final Map<String, Set<String>> profilesByFinder;
+    private final Map<String, Duration> timedOutFinders;
+
+    DiscoveryReport(Duration totalDuration, Map<String, Duration> finderDurations,
+                    Map<String, Map<DiscoveryPhase, Duration>> phaseDurations,
+                    Map<String, Map<DiscoveryCounter, Long>> counters, Map<String, Set<String>> profilesByFinder,
+                    Map<String, Duration> timedOutFinders) {
+        this.totalDuration = totalDuration;
+        this.finderDurations = ImmutableMap.copyOf(finderDurations);
+        this.phaseDurations = phaseDurations.entrySet().stream()
+                .collect(toImmutableMap(Map.Entry::getKey, e -> ImmutableMap.copyOf(e.getValue())));
+        this.counters = counters.entrySet().stream()
+                .collect(toImmutableMap(Map.Entry::getKey, e -> ImmutableMap.copyOf(e.getValue())));
+        this.profilesByFinder = profilesByFinder.entrySet().stream()
+                .collect(toImmutableMap(Map.Entry::getKey, e -> ImmutableSet.copyOf(e.getValue())));
+        this.timedOutFinders = ImmutableMap.copyOf(timedOutFinders);
+    }
+
+    public Duration getTotalDuration() {
+        return totalDuration;
+    }
+
+    public Map<String, Duration> getFinderDurations() {
+        return finderDurations;
+    }
+
+    public Map<String, Map<DiscoveryPhase, Duration>> getPhaseDurations() {
+        return phaseDurations;
+    }
+
+    public Map<String, Map<DiscoveryCounter, Long>> getCounters() {
+        return counters;
+    }
+
+    public long getCount(DiscoveryCounter counter) {
+        return counters.values().stream().mapToLong(values -> values.getOrDefault(counter, 0L)).sum();
+    }
+
+    public Map<String, Set<String>> getProfilesByFinder() {
+        return profilesByFinder;
+    }
+
+    /**
+     * The finders which did not complete within their deadline, with that deadline.
+     */
+    public Map<String, Duration> getTimedOutFinders() {
+        return timedOutFinders;
+    }
+
+    public Set<String> getProfiles() {
+        return profilesByFinder.values().stream().flatMap(Set::stream).collect(toImmutableSet());
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder("Discovered " + getProfiles().size() + " Spring profiles in "
+                + totalDuration.toMillis() + " ms");
+        ImmutableSet.<String> builder().addAll(finderDurations.keySet()).addAll(phaseDurations.keySet())
+                .addAll(counters.keySet()).addAll(timedOutFinders.keySet()).build().forEach(finder -> {
+                    summary.append(System.lineSeparator()).append("  ").append(finder).append(':');
+                    Duration deadline = timedOutFinders.get(finder);
+                    if (deadline != null) {
+                        summary.append(" timed out after ").append(deadline.toMillis()).append(" ms;");
+                    }
+                    Duration duration = finderDurations.get(finder);
+                    if (duration != null) {
+                        summary.append(' ').append(duration.toMillis()).append(" ms, ")
+                                .append(profilesByFinder.getOrDefault(finder, ImmutableSet.of()).size())
+                                .append(" profiles");
+                    }
+                    phaseDurations.getOrDefault(finder, ImmutableMap.of()).forEach((phase, phaseDuration) -> summary
+                            .append("; ").append(phase.displayName()).append(' ').append(phaseDuration.toMillis())
+                            .append(" ms"));
+                    counters.getOrDefault(finder, ImmutableMap.of()).forEach((counter, count) -> summary
+                            .append("; ").append(count).append(' ').append(counter.displayName()));
+                });
+        return summary.toString();
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+}
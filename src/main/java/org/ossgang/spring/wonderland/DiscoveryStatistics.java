@@ -0,0 +1,171 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread-safe {@link DiscoveryListener} accumulating durations, counters and discovered profiles per finder. The
+ * {@link WonderlandContextSelector} records every discovery with one; its {@link DiscoveryReport} is logged at debug
+ * level, or at info level if the system property {@value #SUMMARY_PROPERTY} is {@code true}. Setting
+ * {@value #JMX_PROPERTY} to {@code true} registers the statistics of the last discovery as the MXBean
+ * {@value #OBJECT_NAME}.
+ */
+public class DiscoveryStatistics implements DiscoveryListener, DiscoveryStatisticsMXBean {
+
+    public static final String SUMMARY_PROPERTY = "wonderland.discovery.summary";
+    public static final String JMX_PROPERTY = "wonderland.discovery.jmx";
+    public static final String OBJECT_NAME = "org.ossgang.spring.wonderland:type=DiscoveryStatistics";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiscoveryStatistics.class);
+
+    private final long start = System.nanoTime();
+    private final AtomicLong end = new AtomicLong(start);
+    private final Map<String, LongAdder> finderNanos = new ConcurrentHashMap<>();
+    private final Map<String, Map<DiscoveryPhase, LongAdder>> phaseNanos = new ConcurrentHashMap<>();
+    private final Map<String, Map<DiscoveryCounter, LongAdder>> counters = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> profiles = new ConcurrentHashMap<>();
+    private final Map<String, Duration> timedOut = new ConcurrentHashMap<>();
+
+    @Override
+    public void phaseCompleted(String finder, DiscoveryPhase phase, long durationNanos) {
+        phaseNanos.computeIfAbsent(finder, f -> new ConcurrentHashMap<>())
+                .computeIfAbsent(phase, p -> new LongAdder()).add(durationNanos);
+    }
+
+    @Override
+    public void counted(String finder, DiscoveryCounter counter, long amount) {
+        counters.computeIfAbsent(finder, f -> new ConcurrentHashMap<>())
+                .computeIfAbsent(counter, c -> new LongAdder()).add(amount);
+    }
+
+    @Override
+    public void finderCompleted(String finder, long durationNanos, Set<String> discoveredProfiles) {
+        finderNanos.computeIfAbsent(finder, f -> new LongAdder()).add(durationNanos);
+        profiles.computeIfAbsent(finder, f -> ConcurrentHashMap.newKeySet()).addAll(discoveredProfiles);
+        end.accumulateAndGet(System.nanoTime(), Math::max);
+    }
+
+    @Override
+    public void finderTimedOut(String finder, long deadlineNanos) {
+        timedOut.put(finder, Duration.ofNanos(deadlineNanos));
+        end.accumulateAndGet(System.nanoTime(), Math::max);
+    }
+
+    public DiscoveryReport report() {
+        Map<String, Duration> finderDurations = new TreeMap<>();
+        finderNanos.forEach((finder, nanos) -> finderDurations.put(finder, Duration.ofNanos(nanos.sum())));
+        return new DiscoveryReport(Duration.ofNanos(end.get() - start), finderDurations,
+                snapshot(phaseNanos, DiscoveryPhase.class, nanos -> Duration.ofNanos(nanos.sum())),
+                snapshot(counters, DiscoveryCounter.class, LongAdder::sum), new TreeMap<>(profiles),
+                new TreeMap<>(timedOut));
+    }
+
+    private static <K extends Enum<K>, V> Map<String, Map<K, V>> snapshot(Map<String, Map<K, LongAdder>> values,
+                                                                         Class<K> keyType,
+                                                                         Function<LongAdder, V> conversion) {
+        Map<String, Map<K, V>> snapshot = new TreeMap<>();
+        values.forEach((finder, adders) -> {
+            Map<K, V> converted = new EnumMap<>(keyType);
+            adders.forEach((key, adder) -> converted.put(key, conversion.apply(adder)));
+            snapshot.put(finder, converted);
+        });
+        return snapshot;
+    }
+
+    void publish() {
+        DiscoveryReport report = report();
+        if (Boolean.getBoolean(SUMMARY_PROPERTY)) {
+            LOGGER.info(report.summary());
+        } else {
+            LOGGER.debug(report.summary());
+        }
+        if (Boolean.getBoolean(JMX_PROPERTY)) {
+            register();
+        }
+    }
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            synchronized (DiscoveryStatistics.class) {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register the discovery statistics as " + OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public long getTotalDurationMillis() {
+        return report().getTotalDuration().toMillis();
+    }
+
+    @Override
+    public Map<String, Long> getFinderDurationsMillis() {
+        Map<String, Long> durations = new TreeMap<>();
+        report().getFinderDurations().forEach((finder, duration) -> durations.put(finder, duration.toMillis()));
+        return durations;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseDurationsMillis() {
+        Map<String, Long> durations = new TreeMap<>();
+        report().getPhaseDurations().forEach((finder, phases) -> phases
+                .forEach((phase, duration) -> durations.put(finder + "." + phase, duration.toMillis())));
+        return durations;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new TreeMap<>();
+        report().getCounters().forEach((finder, counts) -> counts
+                .forEach((counter, count) -> values.put(finder + "." + counter, count)));
+        return values;
+    }
+
+    @Override
+    public int getProfileCount() {
+        return report().getProfiles().size();
+    }
+
+    @Override
+    public String getSummary() {
+        return report().summary();
+    }
+}
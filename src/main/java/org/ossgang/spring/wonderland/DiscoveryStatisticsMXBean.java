@@ -0,0 +1,40 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.util.Map;
+
+/**
+ * The JMX view of the {@link DiscoveryStatistics} of the last profile discovery. Durations are in milliseconds, the
+ * keys of the maps are {@code <finder>.<phase>} and {@code <finder>.<counter>} respectively.
+ */
+public interface DiscoveryStatisticsMXBean {
+
+    long getTotalDurationMillis();
+
+    Map<String, Long> getFinderDurationsMillis();
+
+    Map<String, Long> getPhaseDurationsMillis();
+
+    Map<String, Long> getCounters();
+
+    int getProfileCount();
+
+    String getSummary();
+}
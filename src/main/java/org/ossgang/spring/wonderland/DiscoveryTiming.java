@@ -0,0 +1,46 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.util.function.Supplier;
+
+/**
+ * Measures the {@link DiscoveryPhase}s of the finders of this library and names the finders in the reported events.
+ */
+final class DiscoveryTiming {
+
+    private DiscoveryTiming() {
+    }
+
+    static String finderName(WonderlandProfileFinder finder) {
+        if (finder instanceof CachingProfileFinder) {
+            return finderName(((CachingProfileFinder) finder).getDelegate());
+        }
+        return finder.getClass().getSimpleName();
+    }
+
+    static <T> T timed(DiscoveryListener listener, String finder, DiscoveryPhase phase, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            listener.phaseCompleted(finder, phase, System.nanoTime() - start);
+        }
+    }
+}
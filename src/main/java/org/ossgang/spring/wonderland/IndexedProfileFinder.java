@@ -0,0 +1,108 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.requireNonNull;
+import static org.ossgang.spring.wonderland.DiscoveryTiming.timed;
+
+/**
+ * Reads the profiles from the {@code META-INF/wonderland.profiles} indexes written by
+ * {@link WonderlandProfileIndexProcessor}. Classpath roots without such an index are scanned like in
+ * {@link ClassFileProfileFinder}.
+ */
+public class IndexedProfileFinder implements ClassPathEntryProfileFinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedProfileFinder.class);
+
+    private final ClassLoader classLoader;
+
+    public IndexedProfileFinder() {
+        this(IndexedProfileFinder.class.getClassLoader());
+    }
+
+    public IndexedProfileFinder(ClassLoader classLoader) {
+        this.classLoader = requireNonNull(classLoader, "classLoader must not be null");
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+        return discoverSpringProfilesIn(prefixes, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(Collection<String> prefixes, DiscoveryListener listener) {
+        String finder = getClass().getSimpleName();
+        PrefixTrie packages = PrefixTrie.ofPackagePaths(prefixes);
+        Set<String> profiles = ConcurrentHashMap.newKeySet();
+        timed(listener, finder, DiscoveryPhase.ENUMERATE, () -> ClassPathEntry.of(classLoader)).parallelStream()
+                .forEach(entry -> profiles.addAll(profilesIn(entry, packages, finder, listener)));
+        return profiles;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(ClassPathEntry entry, Collection<String> prefixes) {
+        return discoverSpringProfilesIn(entry, prefixes, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(ClassPathEntry entry, Collection<String> prefixes,
+                                                DiscoveryListener listener) {
+        return profilesIn(entry, PrefixTrie.ofPackagePaths(prefixes), getClass().getSimpleName(), listener);
+    }
+
+    private static Set<String> profilesIn(ClassPathEntry entry, PrefixTrie packages, String finder,
+                                          DiscoveryListener listener) {
+        Optional<ProfileIndex> index = timed(listener, finder, DiscoveryPhase.READ_INDEX, () -> readIndex(entry));
+        if (index.isPresent()) {
+            listener.counted(finder, DiscoveryCounter.INDEXES_READ, 1);
+            Set<String> profiles = new HashSet<>();
+            index.get().forEachEntryIn(packages, (packageName, profile) -> {
+                profiles.add(profile);
+                listener.profileFound(finder, profile, ProfileSource.ofPackage(packageName));
+            });
+            return profiles;
+        }
+        return ClassFileProfileFinder.profilesIn(entry, packages, finder, listener);
+    }
+
+    private static Optional<ProfileIndex> readIndex(ClassPathEntry entry) {
+        try (InputStream stream = entry.openResource(ProfileIndex.LOCATION)) {
+            return stream == null ? Optional.empty() : Optional.of(ProfileIndex.read(stream));
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read the profile index of " + entry + ", scanning it instead", e);
+            return Optional.empty();
+        }
+    }
+}
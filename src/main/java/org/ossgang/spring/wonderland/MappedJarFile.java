@@ -0,0 +1,452 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.ossgang.spring.wonderland.ClassPathEntry.ResourceConsumer;
+import org.ossgang.spring.wonderland.ClassPathEntry.ResourceContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a jar through a memory-mapped view of the file: the central directory is walked in place, entries in
+ * rejected directories are skipped without decoding their names, and stored entries are handed out as slices of the
+ * mapping without copying. Jars needing ZIP64 records, larger than 2 GB or with data in front of the archive are not
+ * supported; {@link #open(File)} returns nothing for them, so that callers fall back to {@link java.util.jar.JarFile}.
+ * <p>
+ * The mapping is released when the file is {@link #close() closed}, so that jars are not locked (on Windows) while
+ * they are rebuilt; the contents handed out are only readable until then. A jar truncated or replaced while mapped
+ * makes the JVM raise an {@link InternalError} on access, which is reported as an {@link IOException} instead.
+ */
+final class MappedJarFile implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedJarFile.class);
+
+    private static final Consumer<ByteBuffer> UNMAPPER = unmapper();
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int ENCRYPTED_FLAG = 1;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final byte SLASH = '/';
+
+    private final File file;
+    private final ByteBuffer buffer;
+    private final int centralDirectoryOffset;
+    private final int entryCount;
+    private volatile boolean closed;
+
+    private MappedJarFile(File file, ByteBuffer buffer, int centralDirectoryOffset, int entryCount) {
+        this.file = file;
+        this.buffer = buffer;
+        this.centralDirectoryOffset = centralDirectoryOffset;
+        this.entryCount = entryCount;
+    }
+
+    static Optional<MappedJarFile> open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE || size < END_OF_CENTRAL_DIRECTORY_SIZE) {
+                return Optional.empty();
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                int end = findEndOfCentralDirectory(buffer);
+                if (end < 0 || (end >= ZIP64_LOCATOR_SIZE
+                        && buffer.getInt(end - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR_SIGNATURE)) {
+                    UNMAPPER.accept(buffer);
+                    return Optional.empty();
+                }
+                int entryCount = unsignedShort(buffer, end + 10);
+                long centralDirectorySize = unsignedInt(buffer, end + 12);
+                long centralDirectoryOffset = unsignedInt(buffer, end + 16);
+                if (centralDirectoryOffset + centralDirectorySize != end) {
+                    UNMAPPER.accept(buffer);
+                    return Optional.empty();
+                }
+                return Optional.of(new MappedJarFile(file, buffer, (int) centralDirectoryOffset, entryCount));
+            } catch (InternalError e) {
+                LOGGER.debug("Unable to read the mapped " + file, e);
+                UNMAPPER.accept(buffer);
+                return Optional.empty();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            UNMAPPER.accept(buffer);
+        }
+    }
+
+    /**
+     * Visits the files accepted by the resource filter whose directory (without trailing slash) is accepted by the
+     * directory filter.
+     */
+    void forEach(Predicate<String> directoryFilter, Predicate<String> resourceFilter, ResourceConsumer consumer)
+            throws IOException {
+        checkOpen();
+        try {
+            visit(directoryFilter, resourceFilter, consumer);
+        } catch (InternalError e) {
+            throw unreadable(e);
+        }
+    }
+
+    private void visit(Predicate<String> directoryFilter, Predicate<String> resourceFilter, ResourceConsumer consumer)
+            throws IOException {
+        byte[] name = new byte[256];
+        byte[] lastDirectory = new byte[0];
+        boolean lastDirectoryAccepted = false;
+        int position = centralDirectoryOffset;
+        for (int i = 0; i < entryCount; i++) {
+            int nameLength = checkedNameLength(position);
+            int headerLength = CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + unsignedShort(buffer, position + 30)
+                    + unsignedShort(buffer, position + 32);
+            if (nameLength == 0 || buffer.get(position + CENTRAL_DIRECTORY_HEADER_SIZE + nameLength - 1) == SLASH) {
+                position += headerLength;
+                continue;
+            }
+            if (name.length < nameLength) {
+                name = new byte[Math.max(nameLength, name.length * 2)];
+            }
+            readBytes(position + CENTRAL_DIRECTORY_HEADER_SIZE, name, nameLength);
+
+            int directoryLength = lastIndexOf(name, nameLength, SLASH) + 1;
+            int directoryNameLength = Math.max(directoryLength - 1, 0);
+            if (directoryNameLength != lastDirectory.length
+                    || !regionEquals(name, lastDirectory, directoryNameLength)) {
+                lastDirectory = Arrays.copyOf(name, directoryNameLength);
+                lastDirectoryAccepted = directoryFilter.test(new String(lastDirectory, StandardCharsets.UTF_8));
+            }
+            if (lastDirectoryAccepted) {
+                String resourceName = new String(name, 0, nameLength, StandardCharsets.UTF_8);
+                if (resourceFilter.test(resourceName)) {
+                    consumer.accept(resourceName, contentAt(position, resourceName));
+                }
+            }
+            position += headerLength;
+        }
+    }
+
+    Optional<ResourceContent> find(String resourceName) throws IOException {
+        checkOpen();
+        try {
+            return lookUp(resourceName);
+        } catch (InternalError e) {
+            throw unreadable(e);
+        }
+    }
+
+    private Optional<ResourceContent> lookUp(String resourceName) throws IOException {
+        byte[] expected = resourceName.getBytes(StandardCharsets.UTF_8);
+        byte[] name = new byte[expected.length];
+        int position = centralDirectoryOffset;
+        for (int i = 0; i < entryCount; i++) {
+            int nameLength = checkedNameLength(position);
+            if (nameLength == expected.length) {
+                readBytes(position + CENTRAL_DIRECTORY_HEADER_SIZE, name, nameLength);
+                if (Arrays.equals(name, expected)) {
+                    return Optional.of(contentAt(position, resourceName));
+                }
+            }
+            position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + unsignedShort(buffer, position + 30)
+                    + unsignedShort(buffer, position + 32);
+        }
+        return Optional.empty();
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The mapping of " + file + " has been released");
+        }
+    }
+
+    private IOException unreadable(InternalError e) {
+        return new IOException("Unable to read the mapped " + file + ", it may have changed", e);
+    }
+
+    private int checkedNameLength(int position) throws ZipException {
+        if (position + CENTRAL_DIRECTORY_HEADER_SIZE > buffer.limit()
+                || buffer.getInt(position) != CENTRAL_DIRECTORY_SIGNATURE) {
+            throw new ZipException("Invalid central directory entry at " + position + " in " + file);
+        }
+        return unsignedShort(buffer, position + 28);
+    }
+
+    private ResourceContent contentAt(int centralDirectoryPosition, String resourceName) throws ZipException {
+        int flags = unsignedShort(buffer, centralDirectoryPosition + 8);
+        int method = unsignedShort(buffer, centralDirectoryPosition + 10);
+        long compressedSize = unsignedInt(buffer, centralDirectoryPosition + 20);
+        long uncompressedSize = unsignedInt(buffer, centralDirectoryPosition + 24);
+        long localHeader = unsignedInt(buffer, centralDirectoryPosition + 42);
+        if ((flags & ENCRYPTED_FLAG) != 0 || (method != STORED && method != DEFLATED)) {
+            throw new ZipException("Unsupported entry " + resourceName + " in " + file);
+        }
+        if (localHeader + LOCAL_HEADER_SIZE > buffer.limit()
+                || buffer.getInt((int) localHeader) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header of " + resourceName + " in " + file);
+        }
+        long dataStart = localHeader + LOCAL_HEADER_SIZE + unsignedShort(buffer, (int) localHeader + 26)
+                + unsignedShort(buffer, (int) localHeader + 28);
+        if (dataStart + compressedSize > buffer.limit() || uncompressedSize > Integer.MAX_VALUE) {
+            throw new ZipException("Invalid size of " + resourceName + " in " + file);
+        }
+        ByteBuffer data = buffer.duplicate();
+        data.position((int) dataStart).limit((int) (dataStart + compressedSize));
+        return new MappedContent(data.slice(), method == DEFLATED, (int) uncompressedSize, resourceName);
+    }
+
+    private void readBytes(int position, byte[] target, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(target, 0, length);
+    }
+
+    private static int findEndOfCentralDirectory(ByteBuffer buffer) {
+        int last = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_LENGTH);
+        for (int position = last; position >= first; position--) {
+            if (buffer.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE
+                    && position + END_OF_CENTRAL_DIRECTORY_SIZE + unsignedShort(buffer, position + 20)
+                    == buffer.limit()) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(byte[] bytes, int length, byte value) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionEquals(byte[] bytes, byte[] other, int length) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int unsignedShort(ByteBuffer buffer, int position) {
+        return buffer.getShort(position) & 0xFFFF;
+    }
+
+    private static long unsignedInt(ByteBuffer buffer, int position) {
+        return buffer.getInt(position) & 0xFFFFFFFFL;
+    }
+
+    private final class MappedContent implements ResourceContent {
+        private final ByteBuffer data;
+        private final boolean deflated;
+        private final int size;
+        private final String resourceName;
+
+        private MappedContent(ByteBuffer data, boolean deflated, int size, String resourceName) {
+            this.data = data;
+            this.deflated = deflated;
+            this.size = size;
+            this.resourceName = resourceName;
+        }
+
+        @Override
+        public InputStream open() throws IOException {
+            checkOpen();
+            InputStream stored = new ByteBufferInputStream(data.duplicate());
+            if (!deflated) {
+                return stored;
+            }
+            Inflater inflater = new Inflater(true);
+            return new InflaterInputStream(stored, inflater) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public byte[] read() throws IOException {
+            checkOpen();
+            try {
+                return inflate();
+            } catch (InternalError e) {
+                throw unreadable(e);
+            }
+        }
+
+        private byte[] inflate() throws IOException {
+            byte[] content = new byte[size];
+            if (!deflated) {
+                data.duplicate().get(content);
+                return content;
+            }
+            byte[] compressed = new byte[data.remaining()];
+            data.duplicate().get(compressed);
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(compressed);
+                int inflated = 0;
+                while (inflated < size && !inflater.finished()) {
+                    int count = inflater.inflate(content, inflated, size - inflated);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if (inflated != size) {
+                    throw new ZipException("Truncated entry " + resourceName + " in " + file);
+                }
+                return content;
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid compressed data of " + resourceName + " in " + file + ": "
+                        + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    private final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkOpen();
+            try {
+                return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+            } catch (InternalError e) {
+                throw unreadable(e);
+            }
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            checkOpen();
+            int count = Math.min(length, buffer.remaining());
+            try {
+                buffer.get(target, offset, count);
+            } catch (InternalError e) {
+                throw unreadable(e);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Releases mappings right away instead of on garbage collection, through the buffer's cleaner (Java 8) or
+     * {@code Unsafe.invokeCleaner} (Java 9 and newer). Where neither is accessible, the mappings are left to the
+     * garbage collector.
+     */
+    private static Consumer<ByteBuffer> unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invoke(() -> invokeCleaner.invoke(unsafe, buffer));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            /* before Java 9 */
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> invoke(() -> clean.invoke(cleaner.invoke(buffer)));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Unable to release mapped jars explicitly, leaving them to the garbage collector", e);
+            return buffer -> {
+            };
+        }
+    }
+
+    private static void invoke(ReflectiveCall call) {
+        try {
+            call.invoke();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Unable to release a mapped jar, leaving it to the garbage collector", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ReflectiveCall {
+        void invoke() throws ReflectiveOperationException;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A character trie over a set of (package) prefixes, answering in time linear to the length of the input whether any
+ * prefix matches a name, and whether a directory may contain matching packages at all.
+ */
+final class PrefixTrie {
+
+    private static final char PACKAGE_SEPARATOR = '.';
+    private static final char PATH_SEPARATOR = '/';
+
+    private final Node root = new Node();
+
+    private PrefixTrie() {
+    }
+
+    static PrefixTrie of(Collection<String> prefixes) {
+        PrefixTrie trie = new PrefixTrie();
+        prefixes.forEach(trie::add);
+        return trie;
+    }
+
+    static PrefixTrie ofPackagePaths(Collection<String> packagePrefixes) {
+        PrefixTrie trie = new PrefixTrie();
+        packagePrefixes.forEach(prefix -> trie.add(prefix.replace(PACKAGE_SEPARATOR, PATH_SEPARATOR)));
+        return trie;
+    }
+
+    boolean matchesPrefixOf(String name) {
+        Node node = root;
+        for (int i = 0; i < name.length() && !node.terminal; i++) {
+            node = node.children.get(name.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.terminal;
+    }
+
+    boolean mayContainMatchesBelow(String directory) {
+        Node node = root;
+        for (int i = 0; i < directory.length() && !node.terminal; i++) {
+            node = node.children.get(directory.charAt(i));
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.terminal || directory.isEmpty() || node.children.containsKey(PATH_SEPARATOR);
+    }
+
+    private void add(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Node());
+        }
+        node.terminal = true;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private boolean terminal;
+    }
+}
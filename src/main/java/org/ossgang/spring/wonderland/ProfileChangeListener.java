@@ -18,11 +18,13 @@
 
 package org.ossgang.spring.wonderland;
 
-import javax.swing.*;
-import java.util.Optional;
+import java.util.Set;
 
-abstract class ProfileSelector extends JPanel {
-    private static final long serialVersionUID = 1L;
+/**
+ * Notified by a {@link WatchingProfileFinder} whenever changed files add or remove profiles.
+ */
+@FunctionalInterface
+public interface ProfileChangeListener {
 
-    public abstract Optional<String> getSelectedProfile();
+    void profilesChanged(Set<String> added, Set<String> removed);
 }
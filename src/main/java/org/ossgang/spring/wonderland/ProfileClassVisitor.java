@@ -0,0 +1,103 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+import org.springframework.context.annotation.Profile;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Collects the values of {@link Profile} annotations declared directly on a class or on its methods, reading the
+ * class file only. The class is never loaded or initialized.
+ */
+final class ProfileClassVisitor extends ClassVisitor {
+
+    private static final String PROFILE_DESCRIPTOR = Type.getDescriptor(Profile.class);
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    private final SetMultimap<String, ProfileSource> declarations = HashMultimap.create();
+    private String className;
+
+    private ProfileClassVisitor() {
+        super(SpringAsmInfo.ASM_VERSION);
+    }
+
+    static Set<String> profilesIn(byte[] classFile) {
+        return new HashSet<>(declarationsIn(classFile).keySet());
+    }
+
+    /**
+     * The declared profiles with the class or methods declaring them.
+     */
+    static SetMultimap<String, ProfileSource> declarationsIn(byte[] classFile) {
+        ProfileClassVisitor visitor = new ProfileClassVisitor();
+        new ClassReader(classFile).accept(visitor, PARSING_OPTIONS);
+        return visitor.declarations;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName,
+                      String[] interfaces) {
+        className = Type.getObjectType(name).getClassName();
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        return profileVisitorFor(descriptor, ProfileSource.ofClass(className));
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                     String[] exceptions) {
+        return new MethodVisitor(api) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                return profileVisitorFor(annotationDescriptor, ProfileSource.ofMethod(className, name));
+            }
+        };
+    }
+
+    private AnnotationVisitor profileVisitorFor(String descriptor, ProfileSource source) {
+        if (!PROFILE_DESCRIPTOR.equals(descriptor)) {
+            return null;
+        }
+        return new AnnotationVisitor(api) {
+            @Override
+            public AnnotationVisitor visitArray(String name) {
+                return this;
+            }
+
+            @Override
+            public void visit(String name, Object value) {
+                if (value instanceof String) {
+                    declarations.put((String) value, source);
+                }
+            }
+        };
+    }
+}
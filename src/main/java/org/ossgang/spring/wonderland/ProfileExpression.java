@@ -0,0 +1,296 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A Spring profile expression as given to {@code @Profile} or the {@code profile} attribute of XML {@code <beans>},
+ * e.g. {@code db.pro}, {@code !db.pro} or {@code db.pro & (gui.pro | !gui.demo)}. Follows the grammar of Spring's
+ * {@code Profiles.of(...)}: {@code &} and {@code |} must not be mixed without parentheses.
+ * <p>
+ * An expression is parsed once and can then be {@link #compile(ProfileRegistry) compiled} against the discovered
+ * profiles into a predicate over the bit set of the active profiles (as created by
+ * {@link ProfileRegistry#bitsOf(Collection)}).
+ */
+public final class ProfileExpression {
+
+    private final String expression;
+    private final Node root;
+    private final Set<String> profileNames;
+
+    private ProfileExpression(String expression, Node root) {
+        this.expression = expression;
+        this.root = root;
+        ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        root.collectNames(names);
+        this.profileNames = names.build();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static ProfileExpression parse(String expression) {
+        requireNonNull(expression, "expression must not be null");
+        Parser parser = new Parser(expression);
+        Node root = parser.parseExpression();
+        if (parser.hasMore()) {
+            throw parser.malformed();
+        }
+        return new ProfileExpression(expression.trim(), root);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * The profiles referenced by the expression, negated or not, in order of appearance.
+     */
+    public Set<String> getProfileNames() {
+        return profileNames;
+    }
+
+    /**
+     * Whether the expression is satisfied if exactly the given profiles are active.
+     */
+    public boolean matches(Set<String> activeProfiles) {
+        return root.matches(activeProfiles);
+    }
+
+    /**
+     * A predicate over the positions of the active profiles in the given registry. Profiles unknown to the registry
+     * are never active.
+     */
+    public Predicate<BitSet> compile(ProfileRegistry profiles) {
+        return root.compile(profiles);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ProfileExpression && expression.equals(((ProfileExpression) other).expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return expression.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    private interface Node {
+        boolean matches(Set<String> activeProfiles);
+
+        Predicate<BitSet> compile(ProfileRegistry profiles);
+
+        void collectNames(ImmutableSet.Builder<String> names);
+    }
+
+    private static final class Name implements Node {
+        private final String name;
+
+        private Name(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean matches(Set<String> activeProfiles) {
+            return activeProfiles.contains(name);
+        }
+
+        @Override
+        public Predicate<BitSet> compile(ProfileRegistry profiles) {
+            int position = profiles.positionOf(name);
+            return position < 0 ? active -> false : active -> active.get(position);
+        }
+
+        @Override
+        public void collectNames(ImmutableSet.Builder<String> names) {
+            names.add(name);
+        }
+    }
+
+    private static final class Not implements Node {
+        private final Node operand;
+
+        private Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean matches(Set<String> activeProfiles) {
+            return !operand.matches(activeProfiles);
+        }
+
+        @Override
+        public Predicate<BitSet> compile(ProfileRegistry profiles) {
+            return operand.compile(profiles).negate();
+        }
+
+        @Override
+        public void collectNames(ImmutableSet.Builder<String> names) {
+            operand.collectNames(names);
+        }
+    }
+
+    /**
+     * A conjunction or disjunction. Operands which are plain profile names are combined into one mask, so e.g.
+     * {@code a | b | c} is a single {@link BitSet#intersects(BitSet)}.
+     */
+    private static final class Junction implements Node {
+        private final boolean conjunction;
+        private final List<Node> operands;
+
+        private Junction(boolean conjunction, List<Node> operands) {
+            this.conjunction = conjunction;
+            this.operands = ImmutableList.copyOf(operands);
+        }
+
+        @Override
+        public boolean matches(Set<String> activeProfiles) {
+            return conjunction ? operands.stream().allMatch(operand -> operand.matches(activeProfiles))
+                    : operands.stream().anyMatch(operand -> operand.matches(activeProfiles));
+        }
+
+        @Override
+        public Predicate<BitSet> compile(ProfileRegistry profiles) {
+            BitSet mask = new BitSet();
+            boolean unknownName = false;
+            List<Predicate<BitSet>> others = new ArrayList<>();
+            for (Node operand : operands) {
+                if (operand instanceof Name) {
+                    int position = profiles.positionOf(((Name) operand).name);
+                    if (position < 0) {
+                        unknownName = true;
+                    } else {
+                        mask.set(position);
+                    }
+                } else {
+                    others.add(operand.compile(profiles));
+                }
+            }
+            if (conjunction) {
+                if (unknownName) {
+                    return active -> false;
+                }
+                int[] required = mask.stream().toArray();
+                return active -> {
+                    for (int position : required) {
+                        if (!active.get(position)) {
+                            return false;
+                        }
+                    }
+                    return others.stream().allMatch(other -> other.test(active));
+                };
+            }
+            return active -> mask.intersects(active) || others.stream().anyMatch(other -> other.test(active));
+        }
+
+        @Override
+        public void collectNames(ImmutableSet.Builder<String> names) {
+            operands.forEach(operand -> operand.collectNames(names));
+        }
+    }
+
+    /**
+     * A recursive descent parser over the characters of the expression; whitespace separates tokens.
+     */
+    private static final class Parser {
+        private final String expression;
+        private int position;
+
+        private Parser(String expression) {
+            this.expression = expression;
+        }
+
+        Node parseExpression() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseOperand());
+            char operator = 0;
+            while (peek() == '&' || peek() == '|') {
+                char next = peek();
+                if (operator != 0 && operator != next) {
+                    throw malformed();
+                }
+                operator = next;
+                position++;
+                operands.add(parseOperand());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Junction(operator == '&', operands);
+        }
+
+        private Node parseOperand() {
+            char next = peek();
+            if (next == '!') {
+                position++;
+                return new Not(parseOperand());
+            }
+            if (next == '(') {
+                position++;
+                Node nested = parseExpression();
+                if (peek() != ')') {
+                    throw malformed();
+                }
+                position++;
+                return nested;
+            }
+            int start = position;
+            while (position < expression.length() && !isDelimiter(expression.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw malformed();
+            }
+            return new Name(expression.substring(start, position));
+        }
+
+        boolean hasMore() {
+            return peek() != 0;
+        }
+
+        private char peek() {
+            while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+                position++;
+            }
+            return position < expression.length() ? expression.charAt(position) : 0;
+        }
+
+        private static boolean isDelimiter(char character) {
+            return "()&|!".indexOf(character) >= 0 || Character.isWhitespace(character);
+        }
+
+        IllegalArgumentException malformed() {
+            return new IllegalArgumentException("Malformed profile expression '" + expression + "' at position "
+                    + position);
+        }
+    }
+}
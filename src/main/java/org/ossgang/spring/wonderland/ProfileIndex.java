@@ -0,0 +1,73 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * The content of a {@code META-INF/wonderland.profiles} file: one {@code <package>=<profile>} line per declared
+ * profile.
+ */
+final class ProfileIndex {
+
+    static final String LOCATION = "META-INF/wonderland.profiles";
+
+    private static final char SEPARATOR = '=';
+    private static final String COMMENT = "#";
+
+    private final List<String[]> entries;
+
+    private ProfileIndex(List<String[]> entries) {
+        this.entries = entries;
+    }
+
+    static String entry(String packageName, String profile) {
+        return packageName + SEPARATOR + profile;
+    }
+
+    static ProfileIndex read(InputStream stream) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(SEPARATOR);
+                if (line.startsWith(COMMENT) || separator < 0) {
+                    continue;
+                }
+                entries.add(new String[] { line.substring(0, separator).trim(), line.substring(separator + 1).trim() });
+            }
+        }
+        return new ProfileIndex(entries);
+    }
+
+    /**
+     * Passes the package and profile of each entry in the given packages to the consumer.
+     */
+    void forEachEntryIn(PrefixTrie packagePaths, BiConsumer<String, String> consumer) {
+        entries.stream().filter(entry -> packagePaths.matchesPrefixOf(entry[0].replace('.', '/')))
+                .forEach(entry -> consumer.accept(entry[0], entry[1]));
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.ossgang.spring.wonderland.SelectionModel.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The combinations of category variants offered by a {@link SelectionModel}, e.g. {@code db.pro}/{@code gui.demo}.
+ * The uncategorized profiles enabled by default are part of every combination. Large matrices can be reduced to a
+ * {@link #pairwise() pairwise} covering or a {@link #sample(int, long) random sample}.
+ */
+public final class ProfileMatrix {
+
+    private final List<Category> categories;
+    private final List<String> fixedProfiles;
+
+    private ProfileMatrix(List<Category> categories, List<String> fixedProfiles) {
+        this.categories = categories;
+        this.fixedProfiles = fixedProfiles;
+    }
+
+    public static ProfileMatrix of(SelectionModel model) {
+        requireNonNull(model, "model must not be null");
+        ImmutableList.Builder<String> fixedProfiles = ImmutableList.builder();
+        model.getUncategorized().stream().filter(model::isEnabledByDefault).forEach(fixedProfiles::add);
+        return new ProfileMatrix(model.getCategories(), fixedProfiles.build());
+    }
+
+    /**
+     * The number of combinations of the full matrix, {@link Long#MAX_VALUE} if it is even larger.
+     */
+    public long size() {
+        long size = 1;
+        for (Category category : categories) {
+            if (size > Long.MAX_VALUE / category.getVariants().size()) {
+                return Long.MAX_VALUE;
+            }
+            size *= category.getVariants().size();
+        }
+        return size;
+    }
+
+    /**
+     * The Cartesian product of all variants.
+     */
+    public List<List<String>> all() {
+        List<List<String>> variants = new ArrayList<>();
+        categories.forEach(category -> variants.add(category.getVariants()));
+        List<List<String>> combinations = new ArrayList<>();
+        Lists.cartesianProduct(variants).forEach(choice -> combinations.add(combination(choice)));
+        return combinations;
+    }
+
+    /**
+     * Combinations covering every pair of variants of any two categories at least once, found greedily: each
+     * combination starts from a pair not covered yet and picks the variants of the other categories covering most
+     * further pairs. For n categories of k variants, this is typically little more than k<sup>2</sup> combinations
+     * instead of k<sup>n</sup>.
+     */
+    public List<List<String>> pairwise() {
+        if (categories.size() < 2) {
+            return all();
+        }
+        int count = categories.size();
+        boolean[][][][] covered = new boolean[count][count][][];
+        int uncovered = 0;
+        for (int first = 0; first < count; first++) {
+            for (int second = first + 1; second < count; second++) {
+                covered[first][second] = new boolean[variantCount(first)][variantCount(second)];
+                uncovered += variantCount(first) * variantCount(second);
+            }
+        }
+        List<List<String>> combinations = new ArrayList<>();
+        while (uncovered > 0) {
+            int[] choice = new int[count];
+            Arrays.fill(choice, -1);
+            seedWithUncoveredPair(covered, choice);
+            for (int category = 0; category < count; category++) {
+                if (choice[category] < 0) {
+                    choice[category] = bestVariant(covered, choice, category);
+                }
+            }
+            for (int first = 0; first < count; first++) {
+                for (int second = first + 1; second < count; second++) {
+                    if (!covered[first][second][choice[first]][choice[second]]) {
+                        covered[first][second][choice[first]][choice[second]] = true;
+                        uncovered--;
+                    }
+                }
+            }
+            List<String> variants = new ArrayList<>();
+            for (int category = 0; category < count; category++) {
+                variants.add(categories.get(category).getVariants().get(choice[category]));
+            }
+            combinations.add(combination(variants));
+        }
+        return combinations;
+    }
+
+    /**
+     * Up to the given number of distinct random combinations, reproducible through the seed. The full matrix if it
+     * is not larger than requested.
+     */
+    public List<List<String>> sample(int count, long seed) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative, but was " + count);
+        }
+        if (size() <= count) {
+            return all();
+        }
+        Random random = new Random(seed);
+        Set<List<String>> combinations = new LinkedHashSet<>();
+        for (int attempt = 0; combinations.size() < count && attempt < count * 100; attempt++) {
+            List<String> variants = new ArrayList<>();
+            categories.forEach(category -> variants
+                    .add(category.getVariants().get(random.nextInt(category.getVariants().size()))));
+            combinations.add(combination(variants));
+        }
+        return new ArrayList<>(combinations);
+    }
+
+    private void seedWithUncoveredPair(boolean[][][][] covered, int[] choice) {
+        for (int first = 0; first < choice.length; first++) {
+            for (int second = first + 1; second < choice.length; second++) {
+                for (int firstVariant = 0; firstVariant < variantCount(first); firstVariant++) {
+                    for (int secondVariant = 0; secondVariant < variantCount(second); secondVariant++) {
+                        if (!covered[first][second][firstVariant][secondVariant]) {
+                            choice[first] = firstVariant;
+                            choice[second] = secondVariant;
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private int bestVariant(boolean[][][][] covered, int[] choice, int category) {
+        int best = 0;
+        int bestGain = -1;
+        for (int variant = 0; variant < variantCount(category); variant++) {
+            int gain = 0;
+            for (int other = 0; other < choice.length; other++) {
+                if (other == category || choice[other] < 0) {
+                    continue;
+                }
+                boolean pairCovered = other < category ? covered[other][category][choice[other]][variant]
+                        : covered[category][other][variant][choice[other]];
+                if (!pairCovered) {
+                    gain++;
+                }
+            }
+            if (gain > bestGain) {
+                best = variant;
+                bestGain = gain;
+            }
+        }
+        return best;
+    }
+
+    private int variantCount(int category) {
+        return categories.get(category).getVariants().size();
+    }
+
+    private List<String> combination(List<String> variants) {
+        ImmutableList.Builder<String> profiles = ImmutableList.builder();
+        for (int category = 0; category < categories.size(); category++) {
+            profiles.add(categories.get(category).profile(variants.get(category)));
+        }
+        return profiles.addAll(fixedProfiles).build();
+    }
+}
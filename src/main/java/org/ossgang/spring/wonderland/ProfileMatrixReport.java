@@ -0,0 +1,140 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The outcome of a {@link ProfileMatrixValidator} run: whether the context of each validated combination could be
+ * refreshed, and how long it took.
+ */
+public final class ProfileMatrixReport {
+
+    private final long matrixSize;
+    private final String reduction;
+    private final List<Result> results;
+    private final long durationNanos;
+
+    ProfileMatrixReport(long matrixSize, String reduction, List<Result> results, long durationNanos) {
+        this.matrixSize = matrixSize;
+        this.reduction = reduction;
+        this.results = ImmutableList.copyOf(results);
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * The number of combinations of the full matrix, of which {@link #getResults()} may be a reduction.
+     */
+    public long getMatrixSize() {
+        return matrixSize;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public List<Result> getFailures() {
+        return results.stream().filter(result -> !result.isSuccessful()).collect(toList());
+    }
+
+    public boolean allSucceeded() {
+        return results.stream().allMatch(Result::isSuccessful);
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @throws AssertionError listing the failed combinations, if any
+     */
+    public void assertAllSucceeded() {
+        if (!allSucceeded()) {
+            AssertionError error = new AssertionError(summary());
+            getFailures().forEach(failure -> error.addSuppressed(failure.getFailure().get()));
+            throw error;
+        }
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Validated ").append(results.size()).append(" of ").append(matrixSize)
+                .append(" profile combinations (").append(reduction).append(") in ")
+                .append(TimeUnit.NANOSECONDS.toMillis(durationNanos)).append(" ms, ")
+                .append(getFailures().size()).append(" failed");
+        for (Result result : results) {
+            summary.append(System.lineSeparator()).append("  ").append(result);
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public String toString() {
+        return summary();
+    }
+
+    /**
+     * The refresh of the context of one combination.
+     */
+    public static final class Result {
+        private final List<String> profiles;
+        private final long durationNanos;
+        private final Throwable failure;
+
+        Result(List<String> profiles, long durationNanos, Throwable failure) {
+            this.profiles = ImmutableList.copyOf(profiles);
+            this.durationNanos = durationNanos;
+            this.failure = failure;
+        }
+
+        public List<String> getProfiles() {
+            return profiles;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public Optional<Throwable> getFailure() {
+            return Optional.ofNullable(failure);
+        }
+
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+
+        @Override
+        public String toString() {
+            String outcome = failure == null ? "ok    " : "FAILED";
+            String line = outcome + " " + profiles + " in " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms";
+            if (failure == null) {
+                return line;
+            }
+            Throwable cause = Throwables.getRootCause(failure);
+            return line + ": " + cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        }
+    }
+}
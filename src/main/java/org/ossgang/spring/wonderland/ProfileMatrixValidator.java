@@ -0,0 +1,217 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Starts a Spring context for each combination of category variants of a {@link WonderlandContextSelector} (see
+ * {@link ProfileMatrix}) to verify that all of them can be refreshed, e.g. from a JUnit test:
+ * <pre>
+ * ProfileMatrixValidator.of(WonderlandContextSelector.create("mpe"), AppConfiguration.class)
+ *         .validate().assertAllSucceeded();
+ * </pre>
+ * The profiles are discovered once by the selector; every combination gets an isolated
+ * {@link AnnotationConfigApplicationContext} initialized by the selector's {@link WonderlandContextInitializer}, and
+ * the contexts are refreshed in parallel on a bounded pool. Matrices of up to {@value #MAX_EXHAUSTIVE_COMBINATIONS}
+ * combinations are validated completely and larger ones pairwise, unless chosen otherwise.
+ * <p>
+ * The parallelism defaults to the number of available processors and can be overridden with the system property
+ * {@value #PARALLELISM_PROPERTY}.
+ */
+public final class ProfileMatrixValidator {
+
+    public static final String PARALLELISM_PROPERTY = "wonderland.matrix.parallelism";
+    public static final int MAX_EXHAUSTIVE_COMBINATIONS = 64;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProfileMatrixValidator.class);
+
+    private final WonderlandContextSelector selector;
+    private final List<Class<?>> componentClasses;
+    private final String reductionName;
+    private final Function<ProfileMatrix, List<List<String>>> reduction;
+    private final int parallelism;
+    private final Duration timeout;
+
+    private ProfileMatrixValidator(WonderlandContextSelector selector, List<Class<?>> componentClasses,
+                                   String reductionName, Function<ProfileMatrix, List<List<String>>> reduction,
+                                   int parallelism, Duration timeout) {
+        this.selector = selector;
+        this.componentClasses = componentClasses;
+        this.reductionName = reductionName;
+        this.reduction = reduction;
+        this.parallelism = parallelism;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Validates the combinations of the categories offered by the given selector, registering the given classes in
+     * every context in addition to the sources declaring the profiles.
+     */
+    public static ProfileMatrixValidator of(WonderlandContextSelector selector, Class<?>... componentClasses) {
+        requireNonNull(selector, "selector must not be null");
+        return new ProfileMatrixValidator(selector, ImmutableList.copyOf(componentClasses), "default",
+                ProfileMatrixValidator::defaultCombinations, defaultParallelism(), null);
+    }
+
+    public ProfileMatrixValidator exhaustive() {
+        return withReduction("exhaustive", ProfileMatrix::all);
+    }
+
+    public ProfileMatrixValidator pairwise() {
+        return withReduction("pairwise", ProfileMatrix::pairwise);
+    }
+
+    public ProfileMatrixValidator sampled(int count, long seed) {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be positive, but was " + count);
+        }
+        return withReduction("sample of " + count + " (seed " + seed + ")", matrix -> matrix.sample(count, seed));
+    }
+
+    public ProfileMatrixValidator withParallelism(int newParallelism) {
+        if (newParallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive, but was " + newParallelism);
+        }
+        return new ProfileMatrixValidator(selector, componentClasses, reductionName, reduction, newParallelism,
+                timeout);
+    }
+
+    /**
+     * Fails a combination whose context did not refresh within the given time. Its thread is interrupted, but the
+     * refresh may go on in the background.
+     */
+    public ProfileMatrixValidator withTimeout(Duration newTimeout) {
+        requireNonNull(newTimeout, "timeout must not be null");
+        return new ProfileMatrixValidator(selector, componentClasses, reductionName, reduction, parallelism,
+                newTimeout);
+    }
+
+    /**
+     * The matrix of the categories offered by the selector, discovering the profiles if not done yet.
+     */
+    public ProfileMatrix matrix() {
+        return ProfileMatrix.of(selector.selectionModel());
+    }
+
+    public ProfileMatrixReport validate() {
+        ProfileMatrix matrix = matrix();
+        List<List<String>> combinations = reduction.apply(matrix);
+        LOGGER.info("Validating " + combinations.size() + " of " + matrix.size() + " profile combinations ("
+                + reductionName + ") with " + parallelism + " threads");
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("wonderland-matrix-%d").setDaemon(true).build());
+        ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("wonderland-matrix-watchdog").setDaemon(true).build());
+        long start = System.nanoTime();
+        try {
+            List<CompletableFuture<ProfileMatrixReport.Result>> results = new ArrayList<>();
+            for (List<String> combination : combinations) {
+                CompletableFuture<ProfileMatrixReport.Result> result = new CompletableFuture<>();
+                pool.execute(() -> refresh(combination, result, watchdog));
+                results.add(result);
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            ImmutableList.Builder<ProfileMatrixReport.Result> collected = ImmutableList.builder();
+            results.forEach(result -> collected.add(result.join()));
+            ProfileMatrixReport report = new ProfileMatrixReport(matrix.size(), reductionName, collected.build(),
+                    System.nanoTime() - start);
+            LOGGER.info(report.summary());
+            return report;
+        } finally {
+            pool.shutdownNow();
+            watchdog.shutdownNow();
+        }
+    }
+
+    private void refresh(List<String> profiles, CompletableFuture<ProfileMatrixReport.Result> result,
+                         ScheduledExecutorService watchdog) {
+        long start = System.nanoTime();
+        Thread worker = Thread.currentThread();
+        AtomicBoolean refreshing = new AtomicBoolean(true);
+        ScheduledFuture<?> timeoutCheck = timeout == null ? null : watchdog.schedule(() -> {
+            synchronized (refreshing) {
+                if (refreshing.get() && result.complete(new ProfileMatrixReport.Result(profiles,
+                        System.nanoTime() - start,
+                        new TimeoutException("Context not refreshed within " + timeout.toMillis() + " ms")))) {
+                    worker.interrupt();
+                }
+            }
+        }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        Throwable failure = null;
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.setDisplayName("profile matrix " + profiles);
+            if (!componentClasses.isEmpty()) {
+                context.register(componentClasses.toArray(new Class<?>[0]));
+            }
+            new WonderlandContextInitializer(selector, profiles).initialize(context);
+            context.refresh();
+        } catch (RuntimeException | LinkageError e) {
+            failure = e;
+        } finally {
+            if (timeoutCheck != null) {
+                timeoutCheck.cancel(false);
+            }
+            synchronized (refreshing) {
+                refreshing.set(false);
+            }
+        }
+        result.complete(new ProfileMatrixReport.Result(profiles, System.nanoTime() - start, failure));
+        /* the watchdog cannot interrupt this thread anymore: clear an interrupt of a timeout which raced with the end
+         * of the refresh, so that it does not fail the next combination run by this thread */
+        Thread.interrupted();
+    }
+
+    private static int defaultParallelism() {
+        int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors());
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(PARALLELISM_PROPERTY + " must be positive, but was " + parallelism);
+        }
+        return parallelism;
+    }
+
+    private static List<List<String>> defaultCombinations(ProfileMatrix matrix) {
+        return matrix.size() <= MAX_EXHAUSTIVE_COMBINATIONS ? matrix.all() : matrix.pairwise();
+    }
+
+    private ProfileMatrixValidator withReduction(String newReductionName,
+                                                 Function<ProfileMatrix, List<List<String>>> newReduction) {
+        return new ProfileMatrixValidator(selector, componentClasses, newReductionName, newReduction, parallelism,
+                timeout);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * The discovered profiles, indexed once so that grouping, default resolution and prefix selection are lookups instead
+ * of scans: the variants are indexed by category, and the profiles by each of their parts following a dot (e.g.
+ * {@code b.pro} and {@code pro} for {@code a.b.pro}).
+ */
+public final class ProfileRegistry {
+
+    private static final char SEPARATOR = '.';
+
+    private final SortedSet<WonderlandProfile> profiles;
+    private final SortedMap<String, List<String>> variantsByCategory;
+    private final List<String> uncategorized;
+    private final NavigableMap<String, Set<WonderlandProfile>> profilesBySuffix;
+    private final Supplier<ProfileTree> tree;
+    private final Supplier<SortedMap<String, List<String>>> variantsByParent;
+    private final Supplier<Map<String, Integer>> positions;
+
+    private ProfileRegistry(SortedSet<WonderlandProfile> profiles, SortedMap<String, List<String>> variantsByCategory,
+                            List<String> uncategorized, NavigableMap<String, Set<WonderlandProfile>> profilesBySuffix) {
+        this.profiles = profiles;
+        this.variantsByCategory = variantsByCategory;
+        this.uncategorized = uncategorized;
+        this.profilesBySuffix = profilesBySuffix;
+        this.tree = Suppliers.memoize(() -> ProfileTree.of(profiles));
+        this.variantsByParent = Suppliers.memoize(this::groupByParent);
+        this.positions = Suppliers.memoize(this::indexPositions);
+    }
+
+    static ProfileRegistry of(Collection<String> profileNames) {
+        SortedSet<WonderlandProfile> profiles = profileNames.stream().map(WonderlandProfile::of)
+                .collect(toCollection(TreeSet::new));
+        Map<String, ImmutableList.Builder<String>> variantsByCategory = new TreeMap<>();
+        ImmutableList.Builder<String> uncategorized = ImmutableList.builder();
+        NavigableMap<String, Set<WonderlandProfile>> profilesBySuffix = new TreeMap<>();
+        for (WonderlandProfile profile : profiles) {
+            if (!profile.isCategorized()) {
+                uncategorized.add(profile.getName());
+                continue;
+            }
+            variantsByCategory.computeIfAbsent(profile.getCategory().get(), category -> ImmutableList.builder())
+                    .add(profile.getVariant().get());
+            String name = profile.getName();
+            for (int separator = name.indexOf(SEPARATOR); separator >= 0;
+                 separator = name.indexOf(SEPARATOR, separator + 1)) {
+                profilesBySuffix.computeIfAbsent(name.substring(separator + 1), suffix -> new TreeSet<>())
+                        .add(profile);
+            }
+        }
+        ImmutableSortedMap.Builder<String, List<String>> variants = ImmutableSortedMap.naturalOrder();
+        variantsByCategory.forEach((category, builder) -> variants.put(category, builder.build()));
+        return new ProfileRegistry(ImmutableSortedSet.copyOfSorted(profiles), variants.build(),
+                uncategorized.build(), profilesBySuffix);
+    }
+
+    public SortedSet<WonderlandProfile> getProfiles() {
+        return profiles;
+    }
+
+    public Set<String> getProfileNames() {
+        return profiles.stream().map(WonderlandProfile::getName).collect(toCollection(TreeSet::new));
+    }
+
+    /**
+     * The positions of the given profiles in {@link #getProfiles()}, e.g. the active profiles to evaluate a
+     * {@link ProfileExpression#compile(ProfileRegistry) compiled} profile expression. Unknown profiles are ignored.
+     */
+    public BitSet bitsOf(Collection<String> profileNames) {
+        BitSet bits = new BitSet(profiles.size());
+        for (String profileName : profileNames) {
+            int position = positionOf(profileName);
+            if (position >= 0) {
+                bits.set(position);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * The position of the given profile in {@link #getProfiles()}, -1 if unknown.
+     */
+    int positionOf(String profileName) {
+        return positions.get().getOrDefault(profileName, -1);
+    }
+
+    /**
+     * The sorted variants of each category, ordered by category.
+     */
+    public SortedMap<String, List<String>> getVariantsByCategory() {
+        return variantsByCategory;
+    }
+
+    /**
+     * The sorted last segments of the profiles below each node of the {@link #getTree() tree}, ordered by the node's
+     * path. E.g. {@code pro} and {@code demo} for {@code accelerator.rf}, given {@code accelerator.rf.pro} and
+     * {@code accelerator.rf.demo}.
+     */
+    public SortedMap<String, List<String>> getVariantsByParent() {
+        return variantsByParent.get();
+    }
+
+    /**
+     * The profiles arranged by their dot-separated segments, built on first use.
+     */
+    public ProfileTree getTree() {
+        return tree.get();
+    }
+
+    public List<String> getVariants(String category) {
+        return variantsByCategory.getOrDefault(category, ImmutableList.of());
+    }
+
+    public List<String> getUncategorized() {
+        return uncategorized;
+    }
+
+    /**
+     * The profiles containing a dot directly followed by the given prefix, e.g. {@code db.pro} and
+     * {@code gui.server.production} for {@code pro}.
+     */
+    public SortedSet<WonderlandProfile> profilesWithPrefix(String prefix) {
+        SortedSet<WonderlandProfile> matching = new TreeSet<>();
+        for (Map.Entry<String, Set<WonderlandProfile>> entry : profilesBySuffix.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            matching.addAll(entry.getValue());
+        }
+        return matching;
+    }
+
+    Map<String, String> getSingleVariantByCategory(boolean byParent) {
+        Map<String, String> singleVariantByCategory = new HashMap<>();
+        (byParent ? getVariantsByParent() : variantsByCategory).forEach((category, variants) -> {
+            if (variants.size() > 1) {
+                throw new IllegalStateException(
+                        "More than one default profiles defined for category '" + category + "'!");
+            }
+            singleVariantByCategory.put(category, variants.get(0));
+        });
+        return singleVariantByCategory;
+    }
+
+    private Map<String, Integer> indexPositions() {
+        Map<String, Integer> positionsByName = new HashMap<>(profiles.size() * 2);
+        for (WonderlandProfile profile : profiles) {
+            positionsByName.put(profile.getName(), positionsByName.size());
+        }
+        return positionsByName;
+    }
+
+    private SortedMap<String, List<String>> groupByParent() {
+        ImmutableSortedMap.Builder<String, List<String>> variants = ImmutableSortedMap.naturalOrder();
+        collectVariantsByParent(getTree().getRoot(), variants);
+        return variants.build();
+    }
+
+    private static void collectVariantsByParent(ProfileTree.Node node,
+                                                ImmutableSortedMap.Builder<String, List<String>> variants) {
+        ImmutableList.Builder<String> leaves = ImmutableList.builder();
+        boolean hasLeaves = false;
+        for (ProfileTree.Node child : node.getChildren().values()) {
+            if (child.getProfile().isPresent()) {
+                leaves.add(child.getSegment());
+                hasLeaves = true;
+            }
+            collectVariantsByParent(child, variants);
+        }
+        if (hasLeaves && !node.getPath().isEmpty()) {
+            variants.put(node.getPath(), leaves.build());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return profiles.toString();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.ossgang.spring.wonderland.SelectionModel.Category;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The rows of the {@link SwingSelectionUi}: one per category (with its selected variant) followed by one per
+ * uncategorized profile. The state lives in plain arrays, so the table only creates components for the visible rows.
+ * While the discovery is running, the rows are {@link #update(SelectionModel) replaced} with those of a larger model,
+ * keeping what the user changed so far.
+ */
+final class ProfileSelectionTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    static final int ACTIVE_COLUMN = 0;
+    static final int NAME_COLUMN = 1;
+    static final int VARIANT_COLUMN = 2;
+
+    private static final String[] COLUMN_NAMES = { "", "Profile", "Variant" };
+
+    private final Map<String, Boolean> activeCategoryEdits = new HashMap<>();
+    private final Map<String, String> variantEdits = new HashMap<>();
+    private final Map<String, Boolean> activeProfileEdits = new HashMap<>();
+    private List<Category> categories;
+    private List<String> uncategorized;
+    private boolean disablingAllowed;
+    private boolean[] active;
+    private String[] variants;
+
+    ProfileSelectionTableModel(SelectionModel model) {
+        initialize(model);
+    }
+
+    /**
+     * Shows the rows of the given model, keeping the activation and variants changed by the user where they still
+     * apply.
+     */
+    void update(SelectionModel model) {
+        initialize(model);
+        fireTableDataChanged();
+    }
+
+    private void initialize(SelectionModel model) {
+        this.categories = model.getCategories();
+        this.uncategorized = model.getUncategorized();
+        this.disablingAllowed = model.isDisablingAllowed();
+        this.active = new boolean[categories.size() + uncategorized.size()];
+        this.variants = new String[categories.size()];
+        for (int row = 0; row < categories.size(); row++) {
+            Category category = categories.get(row);
+            active[row] = activeCategoryEdits.getOrDefault(category.getName(), category.isActiveByDefault());
+            String editedVariant = variantEdits.get(category.getName());
+            variants[row] = category.getVariants().contains(editedVariant) ? editedVariant
+                    : category.getPreselectedVariant();
+        }
+        for (int row = categories.size(); row < active.length; row++) {
+            String profile = uncategorized.get(row - categories.size());
+            active[row] = activeProfileEdits.getOrDefault(profile, model.isEnabledByDefault(profile));
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return active.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == ACTIVE_COLUMN ? Boolean.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+        case ACTIVE_COLUMN:
+            return active[row];
+        case NAME_COLUMN:
+            return isCategory(row) ? categories.get(row).getName() : uncategorized.get(row - categories.size());
+        default:
+            return isCategory(row) ? variants[row] : "";
+        }
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        if (column == ACTIVE_COLUMN) {
+            return disablingAllowed;
+        }
+        return column == VARIANT_COLUMN && isCategory(row) && active[row];
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (column == ACTIVE_COLUMN) {
+            active[row] = Boolean.TRUE.equals(value);
+            if (isCategory(row)) {
+                activeCategoryEdits.put(categories.get(row).getName(), active[row]);
+            } else {
+                activeProfileEdits.put(uncategorized.get(row - categories.size()), active[row]);
+            }
+            fireTableRowsUpdated(row, row);
+        } else if (column == VARIANT_COLUMN && isCategory(row) && variantsAt(row).contains(value)) {
+            variants[row] = (String) value;
+            variantEdits.put(categories.get(row).getName(), variants[row]);
+            fireTableCellUpdated(row, column);
+        }
+    }
+
+    List<String> variantsAt(int row) {
+        return isCategory(row) ? categories.get(row).getVariants() : Collections.emptyList();
+    }
+
+    boolean matches(int row, String filter) {
+        String lowerCaseFilter = filter.trim().toLowerCase(Locale.ROOT);
+        if (lowerCaseFilter.isEmpty()) {
+            return true;
+        }
+        if (!isCategory(row)) {
+            return uncategorized.get(row - categories.size()).toLowerCase(Locale.ROOT).contains(lowerCaseFilter);
+        }
+        Category category = categories.get(row);
+        return category.getVariants().stream().map(category::profile)
+                .anyMatch(profile -> profile.toLowerCase(Locale.ROOT).contains(lowerCaseFilter));
+    }
+
+    List<String> getSelection() {
+        List<String> selection = new ArrayList<>();
+        for (int row = 0; row < active.length; row++) {
+            if (!active[row]) {
+                continue;
+            }
+            selection.add(isCategory(row) ? categories.get(row).profile(variants[row])
+                    : uncategorized.get(row - categories.size()));
+        }
+        return selection;
+    }
+
+    private boolean isCategory(int row) {
+        return row < categories.size();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Where a profile is declared: a class or a method annotated with {@link org.springframework.context.annotation.Profile},
+ * a Spring XML file with a {@code <beans profile="...">} element, or (for profiles read from a
+ * {@link IndexedProfileFinder profile index}) just the package of the declaring class.
+ */
+public final class ProfileSource {
+
+    public enum Kind {
+        CLASS,
+        METHOD,
+        XML_FILE,
+        PACKAGE
+    }
+
+    private static final char KIND_SEPARATOR = ':';
+    private static final char METHOD_SEPARATOR = '#';
+
+    private final Kind kind;
+    private final String location;
+    private final String methodName;
+
+    private ProfileSource(Kind kind, String location, String methodName) {
+        this.kind = kind;
+        this.location = requireNonNull(location, "location must not be null");
+        this.methodName = methodName;
+    }
+
+    public static ProfileSource ofClass(String className) {
+        return new ProfileSource(Kind.CLASS, className, null);
+    }
+
+    public static ProfileSource ofMethod(String className, String methodName) {
+        return new ProfileSource(Kind.METHOD, className, requireNonNull(methodName, "methodName must not be null"));
+    }
+
+    public static ProfileSource ofXmlFile(String url) {
+        return new ProfileSource(Kind.XML_FILE, url, null);
+    }
+
+    public static ProfileSource ofPackage(String packageName) {
+        return new ProfileSource(Kind.PACKAGE, packageName, null);
+    }
+
+    /**
+     * Parses the {@link #toString()} representation.
+     */
+    static ProfileSource parse(String source) {
+        int kindSeparator = source.indexOf(KIND_SEPARATOR);
+        if (kindSeparator < 0) {
+            throw new IllegalArgumentException("Invalid profile source '" + source + "'");
+        }
+        Kind kind = Kind.valueOf(source.substring(0, kindSeparator));
+        String location = source.substring(kindSeparator + 1);
+        if (kind != Kind.METHOD) {
+            return new ProfileSource(kind, location, null);
+        }
+        int methodSeparator = location.lastIndexOf(METHOD_SEPARATOR);
+        if (methodSeparator < 0) {
+            throw new IllegalArgumentException("Invalid profile source '" + source + "'");
+        }
+        return ofMethod(location.substring(0, methodSeparator), location.substring(methodSeparator + 1));
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The class name (for classes and methods), the URL of the XML file or the package name.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    public Optional<String> getMethodName() {
+        return Optional.ofNullable(methodName);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ProfileSource)) {
+            return false;
+        }
+        ProfileSource that = (ProfileSource) other;
+        return kind == that.kind && location.equals(that.location) && Objects.equals(methodName, that.methodName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, location, methodName);
+    }
+
+    @Override
+    public String toString() {
+        return kind.name() + KIND_SEPARATOR + location + (methodName == null ? "" : METHOD_SEPARATOR + methodName);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * The sources declaring each profile, collected from the {@link DiscoveryListener#profileFound} events of a discovery,
+ * i.e. during the same scan. The reported profiles are parsed as {@link ProfileExpression}s and indexed under every
+ * profile they reference, so e.g. {@code !db.pro} and {@code db.pro & gui.pro} are sources of {@code db.pro}.
+ * Profiles found by finders not reporting their sources have no sources.
+ */
+public final class ProfileSourceIndex implements DiscoveryListener {
+
+    private static final Pattern NAMING_SCHEME = Pattern.compile("[A-Za-z0-9_-]+(\\.[A-Za-z0-9_-]+)*");
+
+    private final SetMultimap<String, ProfileSource> sources = Multimaps
+            .synchronizedSetMultimap(LinkedHashMultimap.create());
+    private final SetMultimap<ProfileSource, ProfileExpression> conditions = Multimaps
+            .synchronizedSetMultimap(LinkedHashMultimap.create());
+    private final SetMultimap<String, ProfileSource> malformed = Multimaps
+            .synchronizedSetMultimap(LinkedHashMultimap.create());
+
+    @Override
+    public void profileFound(String finder, String profile, ProfileSource source) {
+        if (profile.trim().isEmpty()) {
+            return;
+        }
+        ProfileExpression expression;
+        try {
+            expression = ProfileExpression.parse(profile);
+        } catch (IllegalArgumentException e) {
+            malformed.put(profile.trim(), source);
+            return;
+        }
+        expression.getProfileNames().forEach(name -> sources.put(name, source));
+        conditions.put(source, expression);
+    }
+
+    public boolean hasSources(String profile) {
+        return sources.containsKey(profile);
+    }
+
+    public Set<ProfileSource> sourcesOf(String profile) {
+        synchronized (sources) {
+            return ImmutableSet.copyOf(sources.get(profile));
+        }
+    }
+
+    /**
+     * The sources declaring any of the given profiles, e.g. the configuration classes and XML files to load for a
+     * selection.
+     */
+    public Set<ProfileSource> sourcesOf(Collection<String> profiles) {
+        Set<ProfileSource> matching = new LinkedHashSet<>();
+        synchronized (sources) {
+            profiles.forEach(profile -> matching.addAll(sources.get(profile)));
+        }
+        return matching;
+    }
+
+    /**
+     * The sources whose profile condition is satisfied when exactly the given profiles are active, i.e. one of the
+     * expressions declared by the source matches (like Spring does for the values of a single {@code @Profile}).
+     * For evaluating many selections, prefer an {@link ActivationPreview}.
+     */
+    public Set<ProfileSource> sourcesActivatedBy(Collection<String> activeProfiles) {
+        Set<String> active = ImmutableSet.copyOf(activeProfiles);
+        Set<ProfileSource> activated = new LinkedHashSet<>();
+        synchronized (conditions) {
+            conditions.asMap().forEach((source, expressions) -> {
+                if (expressions.stream().anyMatch(expression -> expression.matches(active))) {
+                    activated.add(source);
+                }
+            });
+        }
+        return activated;
+    }
+
+    /**
+     * The profile expressions declared by each source.
+     */
+    public Map<ProfileSource, Set<ProfileExpression>> getConditions() {
+        Map<ProfileSource, Set<ProfileExpression>> snapshot = new LinkedHashMap<>();
+        synchronized (conditions) {
+            conditions.asMap().forEach((source, expressions) -> snapshot.put(source, ImmutableSet.copyOf(expressions)));
+        }
+        return snapshot;
+    }
+
+    /**
+     * The profiles not following the {@code <category>.<variant>} naming scheme (dot-separated segments of letters,
+     * digits, {@code _} and {@code -}) with their sources, e.g. names with empty segments, as well as malformed
+     * profile expressions like {@code db.pro & gui.pro | gui.demo}.
+     */
+    public Map<String, Set<ProfileSource>> namingViolations() {
+        Map<String, Set<ProfileSource>> violations = new TreeMap<>();
+        synchronized (sources) {
+            sources.asMap().forEach((profile, profileSources) -> {
+                if (!NAMING_SCHEME.matcher(profile).matches()) {
+                    violations.put(profile, ImmutableSet.copyOf(profileSources));
+                }
+            });
+        }
+        synchronized (malformed) {
+            malformed.asMap().forEach((expression, expressionSources) -> violations.put(expression,
+                    ImmutableSet.copyOf(expressionSources)));
+        }
+        return violations;
+    }
+}
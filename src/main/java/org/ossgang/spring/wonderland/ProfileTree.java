@@ -0,0 +1,219 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The profiles arranged in a tree over their dot-separated segments, e.g. {@code accelerator}, {@code subsystem},
+ * {@code device} and {@code pro} for {@code accelerator.subsystem.device.pro}. The profiles are numbered in depth-first
+ * order, so the profiles below a node are a contiguous range: selecting a subtree, or all of its profiles ending with
+ * a given segment, is a range lookup instead of a scan.
+ */
+public final class ProfileTree {
+
+    private static final char SEPARATOR = '.';
+
+    private final List<WonderlandProfile> profiles;
+    private final Map<String, int[]> positionsByLastSegment;
+    private final Node root;
+
+    private ProfileTree(Collection<WonderlandProfile> profiles) {
+        NodeBuilder rootBuilder = new NodeBuilder("", "");
+        for (WonderlandProfile profile : profiles) {
+            rootBuilder.add(profile);
+        }
+        List<WonderlandProfile> ordered = new ArrayList<>();
+        Map<String, List<Integer>> positions = new HashMap<>();
+        this.root = rootBuilder.build(ordered, positions);
+        this.profiles = ImmutableList.copyOf(ordered);
+        Map<String, int[]> positionsByLastSegment = new HashMap<>();
+        positions.forEach((segment, list) -> positionsByLastSegment.put(segment,
+                list.stream().mapToInt(Integer::intValue).toArray()));
+        this.positionsByLastSegment = positionsByLastSegment;
+    }
+
+    static ProfileTree of(Collection<WonderlandProfile> profiles) {
+        return new ProfileTree(profiles);
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * The node of the given dot-separated path, the root for the empty path.
+     */
+    public Optional<Node> node(String path) {
+        Node node = root;
+        if (path.isEmpty()) {
+            return Optional.of(node);
+        }
+        int start = 0;
+        while (node != null) {
+            int separator = path.indexOf(SEPARATOR, start);
+            String segment = separator < 0 ? path.substring(start) : path.substring(start, separator);
+            node = node.children.get(segment);
+            if (separator < 0) {
+                break;
+            }
+            start = separator + 1;
+        }
+        return Optional.ofNullable(node);
+    }
+
+    /**
+     * All profiles in depth-first order.
+     */
+    public List<WonderlandProfile> getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * A segment of the tree. It is a profile itself if a discovered profile ends here, and may have further children
+     * (e.g. both {@code gui} and {@code gui.pro} are profiles).
+     */
+    public final class Node {
+
+        private final String segment;
+        private final String path;
+        private final WonderlandProfile profile;
+        private final SortedMap<String, Node> children;
+        private final int start;
+        private final int end;
+
+        private Node(String segment, String path, WonderlandProfile profile, SortedMap<String, Node> children,
+                     int start, int end) {
+            this.segment = segment;
+            this.path = path;
+            this.profile = profile;
+            this.children = children;
+            this.start = start;
+            this.end = end;
+        }
+
+        public String getSegment() {
+            return segment;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Optional<WonderlandProfile> getProfile() {
+            return Optional.ofNullable(profile);
+        }
+
+        public SortedMap<String, Node> getChildren() {
+            return children;
+        }
+
+        public boolean isLeaf() {
+            return children.isEmpty();
+        }
+
+        /**
+         * This node's profile and all profiles below it, in depth-first order.
+         */
+        public List<WonderlandProfile> getProfiles() {
+            return profiles.subList(start, end);
+        }
+
+        /**
+         * The profiles of this subtree whose last segment is the given one, e.g. all {@code pro} profiles below
+         * {@code accelerator.subsystem}.
+         */
+        public List<WonderlandProfile> getProfilesEndingWith(String lastSegment) {
+            int[] positions = positionsByLastSegment.get(lastSegment);
+            if (positions == null) {
+                return ImmutableList.of();
+            }
+            int from = insertionPoint(positions, start);
+            int to = insertionPoint(positions, end);
+            ImmutableList.Builder<WonderlandProfile> matching = ImmutableList.builder();
+            for (int i = from; i < to; i++) {
+                matching.add(profiles.get(positions[i]));
+            }
+            return matching.build();
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    private static int insertionPoint(int[] sorted, int value) {
+        int index = Arrays.binarySearch(sorted, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private final class NodeBuilder {
+        private final String segment;
+        private final String path;
+        private final Map<String, NodeBuilder> children = new TreeMap<>();
+        private WonderlandProfile profile;
+
+        private NodeBuilder(String segment, String path) {
+            this.segment = segment;
+            this.path = path;
+        }
+
+        private void add(WonderlandProfile newProfile) {
+            String name = newProfile.getName();
+            NodeBuilder node = this;
+            int start = 0;
+            while (true) {
+                int separator = name.indexOf(SEPARATOR, start);
+                int segmentEnd = separator < 0 ? name.length() : separator;
+                String childSegment = name.substring(start, segmentEnd);
+                NodeBuilder parent = node;
+                node = parent.children.computeIfAbsent(childSegment,
+                        s -> new NodeBuilder(childSegment, name.substring(0, segmentEnd)));
+                if (separator < 0) {
+                    node.profile = newProfile;
+                    return;
+                }
+                start = separator + 1;
+            }
+        }
+
+        private Node build(List<WonderlandProfile> ordered, Map<String, List<Integer>> positions) {
+            int start = ordered.size();
+            if (profile != null) {
+                positions.computeIfAbsent(segment, s -> new ArrayList<>()).add(ordered.size());
+                ordered.add(profile);
+            }
+            ImmutableSortedMap.Builder<String, Node> builtChildren = ImmutableSortedMap.naturalOrder();
+            children.forEach((childSegment, child) -> builtChildren.put(childSegment, child.build(ordered, positions)));
+            return new Node(segment, path, profile, builtChildren.build(), start, ordered.size());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link SelectionModel} growing while the discovery is still running. A {@link WonderlandSelectionUi} can show
+ * the {@link #currentModel() current} choices right away and update them whenever the {@link #getVersion() version}
+ * changes, or simply {@link #awaitModel() wait} for the complete model. A discovery may also complete with a
+ * {@link #getFailure() failure}, which the user interface should report instead of a selection.
+ */
+public final class ProgressiveSelection {
+
+    private final DiscoveryProgress progress;
+    private final Function<ProfileRegistry, SelectionModel> modelOf;
+    private final CompletableFuture<SelectionModel> model;
+    private final CompletableFuture<ActivationPreview> activationPreview;
+
+    ProgressiveSelection(DiscoveryProgress progress, CompletableFuture<ProfileRegistry> discovery,
+                         Function<ProfileRegistry, SelectionModel> modelOf,
+                         CompletableFuture<ActivationPreview> activationPreview) {
+        this.progress = requireNonNull(progress, "progress must not be null");
+        this.modelOf = requireNonNull(modelOf, "modelOf must not be null");
+        this.activationPreview = requireNonNull(activationPreview, "activationPreview must not be null");
+        this.model = discovery.thenCombine(activationPreview, (profiles, preview) -> modelOf.apply(profiles));
+    }
+
+    /**
+     * A selection of which all choices are known already.
+     */
+    public static ProgressiveSelection of(SelectionModel model) {
+        requireNonNull(model, "model must not be null");
+        return new ProgressiveSelection(new DiscoveryProgress(), CompletableFuture.completedFuture(null),
+                profiles -> model, CompletableFuture.completedFuture(null));
+    }
+
+    public boolean isComplete() {
+        return model.isDone();
+    }
+
+    /**
+     * The cause of the discovery's failure, once it completed without a model.
+     */
+    public Optional<Throwable> getFailure() {
+        if (!model.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        try {
+            model.join();
+            return Optional.empty();
+        } catch (CompletionException e) {
+            return Optional.of(e.getCause() != null ? e.getCause() : e);
+        } catch (CancellationException e) {
+            return Optional.of(e);
+        }
+    }
+
+    /**
+     * The choices among the profiles discovered so far, or the final ones once the discovery is complete. A failed
+     * discovery leaves the choices among the profiles discovered before the failure.
+     */
+    public SelectionModel currentModel() {
+        if (isComplete() && !model.isCompletedExceptionally()) {
+            return awaitModel();
+        }
+        return modelOf.apply(progress.getProfiles());
+    }
+
+    /**
+     * The final choices, waiting for the discovery to complete. Throws the {@link #getFailure() failure} of the
+     * discovery.
+     */
+    public SelectionModel awaitModel() {
+        return AsyncWonderlandProfileFinder.await(model);
+    }
+
+    /**
+     * The preview of the sources activated by a selection, once the discovery is complete and if any sources with
+     * profile conditions were discovered.
+     */
+    public Optional<ActivationPreview> getActivationPreview() {
+        if (!isComplete() || model.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(activationPreview.join()).filter(ActivationPreview::hasSources);
+    }
+
+    /**
+     * Changes whenever profiles were added, finders completed or the discovery completed.
+     */
+    public long getVersion() {
+        return progress.getVersion() + (isComplete() ? 1 : 0);
+    }
+
+    public int getDiscoveredProfileCount() {
+        return progress.getProfileCount();
+    }
+
+    public int getCompletedFinders() {
+        return progress.getSettledFinders();
+    }
+
+    /**
+     * The number of finders started so far, 0 if not known.
+     */
+    public int getStartedFinders() {
+        return progress.getStartedFinders();
+    }
+}
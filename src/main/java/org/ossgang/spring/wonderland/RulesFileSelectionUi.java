@@ -0,0 +1,92 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.ossgang.spring.wonderland.SelectionModel.Category;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Selects the profiles without any interaction, following a rules file in properties format: {@code <category>=<variant>}
+ * selects a variant of a category ({@code -} disables it) and {@code <profile>=true|false} switches an uncategorized
+ * profile. Categories and profiles without a rule keep their default. A rule selecting an unknown variant fails the
+ * selection instead of silently starting with a different configuration.
+ */
+public class RulesFileSelectionUi implements WonderlandSelectionUi {
+
+    private static final String DISABLED = "-";
+
+    private final Path rulesFile;
+
+    public RulesFileSelectionUi(Path rulesFile) {
+        this.rulesFile = requireNonNull(rulesFile, "rulesFile must not be null");
+    }
+
+    @Override
+    public Optional<List<String>> select(SelectionModel model) {
+        Properties rules = readRules();
+        List<String> selection = new ArrayList<>();
+        for (Category category : model.getCategories()) {
+            String rule = rules.getProperty(category.getName());
+            if (rule == null) {
+                if (category.isActiveByDefault()) {
+                    selection.add(category.profile(category.getPreselectedVariant()));
+                }
+            } else if (DISABLED.equals(rule.trim())) {
+                if (!model.isDisablingAllowed()) {
+                    throw new IllegalStateException("Rules file " + rulesFile + " disables category '"
+                            + category.getName() + "', but disabling of categories is not allowed");
+                }
+            } else if (category.getVariants().contains(rule.trim())) {
+                selection.add(category.profile(rule.trim()));
+            } else {
+                throw new IllegalStateException("Rules file " + rulesFile + " selects the unknown variant '"
+                        + rule.trim() + "' of category '" + category.getName() + "', available are "
+                        + category.getVariants());
+            }
+        }
+        for (String profile : model.getUncategorized()) {
+            String rule = rules.getProperty(profile);
+            if (rule == null ? model.isEnabledByDefault(profile) : Boolean.parseBoolean(rule.trim())) {
+                selection.add(profile);
+            }
+        }
+        return Optional.of(selection);
+    }
+
+    private Properties readRules() {
+        Properties rules = new Properties();
+        try (Reader reader = Files.newBufferedReader(rulesFile, StandardCharsets.UTF_8)) {
+            rules.load(reader);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read the profile selection rules from " + rulesFile, e);
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * What a {@link WonderlandSelectionUi} offers to choose from: the discovered profiles grouped by category with their
+ * preselected variants, and the uncategorized profiles that can be switched on and off.
+ */
+public final class SelectionModel {
+
+    private final List<Category> categories;
+    private final List<String> uncategorized;
+    private final Set<String> enabledUncategorized;
+    private final boolean disablingAllowed;
+
+    private SelectionModel(List<Category> categories, List<String> uncategorized, Set<String> enabledUncategorized,
+                           boolean disablingAllowed) {
+        this.categories = ImmutableList.copyOf(categories);
+        this.uncategorized = ImmutableList.copyOf(uncategorized);
+        this.enabledUncategorized = enabledUncategorized;
+        this.disablingAllowed = disablingAllowed;
+    }
+
+    static SelectionModel of(Collection<String> profiles, Collection<String> defaultProfiles,
+                             boolean disablingAllowed) {
+        return of(ProfileRegistry.of(profiles), defaultProfiles, disablingAllowed, false);
+    }
+
+    /**
+     * Groups the profiles by their first segment, or by their parent path for hierarchical categories (e.g.
+     * {@code accelerator.rf} with the variants {@code pro} and {@code demo}).
+     */
+    static SelectionModel of(ProfileRegistry profiles, Collection<String> defaultProfiles,
+                             boolean disablingAllowed, boolean hierarchicalCategories) {
+        ProfileRegistry defaults = ProfileRegistry.of(defaultProfiles);
+        Map<String, String> defaultVariants = defaults.getSingleVariantByCategory(hierarchicalCategories);
+
+        List<Category> categories = new ArrayList<>();
+        (hierarchicalCategories ? profiles.getVariantsByParent() : profiles.getVariantsByCategory()).forEach((name, variants) -> categories
+                .add(new Category(name, variants, defaultVariants.get(name), disablingAllowed)));
+
+        List<String> uncategorized = disablingAllowed ? profiles.getUncategorized() : ImmutableList.of();
+        return new SelectionModel(categories, uncategorized, new HashSet<>(defaults.getUncategorized()),
+                disablingAllowed);
+    }
+
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    public List<String> getUncategorized() {
+        return uncategorized;
+    }
+
+    public boolean isEnabledByDefault(String uncategorizedProfile) {
+        return enabledUncategorized.contains(uncategorizedProfile);
+    }
+
+    public boolean isDisablingAllowed() {
+        return disablingAllowed;
+    }
+
+    public List<String> getDefaultSelection() {
+        List<String> selection = new ArrayList<>();
+        categories.stream().filter(Category::isActiveByDefault)
+                .forEach(category -> selection.add(category.profile(category.getPreselectedVariant())));
+        uncategorized.stream().filter(this::isEnabledByDefault).forEach(selection::add);
+        return selection;
+    }
+
+    /**
+     * A category of profiles, e.g. {@code db} for the profiles {@code db.pro} and {@code db.demo}, or
+     * {@code accelerator.rf} for {@code accelerator.rf.pro} with hierarchical categories.
+     */
+    public static final class Category {
+
+        private final String name;
+        private final List<String> variants;
+        private final String defaultVariant;
+        private final boolean activeByDefault;
+
+        private Category(String name, List<String> sortedVariants, String defaultVariant, boolean disablingAllowed) {
+            this.name = requireNonNull(name, "name must not be null");
+            this.variants = ImmutableList.copyOf(sortedVariants);
+            this.defaultVariant = defaultVariant;
+            this.activeByDefault = defaultVariant != null || !disablingAllowed;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getVariants() {
+            return variants;
+        }
+
+        public Optional<String> getDefaultVariant() {
+            return Optional.ofNullable(defaultVariant);
+        }
+
+        public String getPreselectedVariant() {
+            return variants.contains(defaultVariant) ? defaultVariant : variants.get(0);
+        }
+
+        public boolean isActiveByDefault() {
+            return activeByDefault;
+        }
+
+        public String profile(String variant) {
+            return name + '.' + variant;
+        }
+    }
+}
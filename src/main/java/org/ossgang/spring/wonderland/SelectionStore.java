@@ -0,0 +1,176 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Remembers the last confirmed profile selection of an application in a local file, so that the next start can
+ * {@link Mode#REUSE reuse} it without asking or {@link Mode#PREFILL prefill} the selection with it.
+ * <p>
+ * The files are kept in {@code ~/.wonderland/selections}, or in the directory given with the system property
+ * {@value #DIRECTORY_PROPERTY}. The mode chosen in code can be overridden with {@value #MODE_PROPERTY}, e.g. to get the
+ * selection dialog back once with {@code -Dwonderland.selection.stored=prefill}.
+ */
+public final class SelectionStore {
+
+    public static final String DIRECTORY_PROPERTY = "wonderland.selection.store";
+    public static final String MODE_PROPERTY = "wonderland.selection.stored";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectionStore.class);
+
+    private static final Pattern APPLICATION_ID = Pattern.compile("[A-Za-z0-9_.-]+");
+    private static final String FILE_SUFFIX = ".selection";
+    private static final String COMMENT = "#";
+
+    /**
+     * How a stored selection is used.
+     */
+    public enum Mode {
+        /**
+         * Activates the stored selection without asking, as long as all its profiles are still discovered.
+         */
+        REUSE,
+        /**
+         * Asks for the selection, preselecting the stored one instead of the defaults.
+         */
+        PREFILL
+    }
+
+    private final String applicationId;
+    private final Path file;
+
+    private SelectionStore(String applicationId, Path directory) {
+        this.applicationId = applicationId;
+        this.file = directory.resolve(applicationId + FILE_SUFFIX);
+    }
+
+    public static SelectionStore forApplication(String applicationId) {
+        return inDirectory(defaultDirectory(), applicationId);
+    }
+
+    public static SelectionStore inDirectory(Path directory, String applicationId) {
+        requireNonNull(directory, "directory must not be null");
+        requireNonNull(applicationId, "applicationId must not be null");
+        if (!APPLICATION_ID.matcher(applicationId).matches() || applicationId.startsWith(".")) {
+            throw new IllegalArgumentException("Application id '" + applicationId
+                    + "' must consist of letters, digits, '_', '-' and '.' and must not start with '.'");
+        }
+        return new SelectionStore(applicationId, directory);
+    }
+
+    public String getApplicationId() {
+        return applicationId;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * The last stored selection, empty if there is none or it cannot be read.
+     */
+    public Optional<List<String>> load() {
+        try {
+            ImmutableList.Builder<String> profiles = ImmutableList.builder();
+            Files.readAllLines(file, StandardCharsets.UTF_8).stream()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith(COMMENT))
+                    .forEach(profiles::add);
+            return Optional.of(profiles.build());
+        } catch (NoSuchFileException e) {
+            LOGGER.debug("No stored profile selection at " + file);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read the stored profile selection " + file + ", ignoring it", e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Replaces the stored selection. The file is written next to the old one and moved over it, so a concurrent start
+     * never reads a partially written selection.
+     */
+    public void save(Collection<String> profiles) {
+        requireNonNull(profiles, "profiles must not be null");
+        try {
+            Files.createDirectories(file.getParent());
+            Path temporaryFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+                writer.write(COMMENT + " Last profile selection of " + applicationId);
+                writer.newLine();
+                for (String profile : profiles) {
+                    writer.write(profile);
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the profile selection in " + file, e);
+        }
+    }
+
+    static Mode configuredMode(Mode mode) {
+        String configured = System.getProperty(MODE_PROPERTY);
+        if (configured == null || configured.trim().isEmpty()) {
+            return mode;
+        }
+        try {
+            return Mode.valueOf(configured.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown stored selection mode '" + configured
+                    + "', expected reuse or prefill", e);
+        }
+    }
+
+    private static Path defaultDirectory() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        if (directory != null && !directory.trim().isEmpty()) {
+            return Paths.get(directory.trim());
+        }
+        return Paths.get(System.getProperty("user.home"), ".wonderland", "selections");
+    }
+
+    @Override
+    public String toString() {
+        return "SelectionStore{" + file + "}";
+    }
+}
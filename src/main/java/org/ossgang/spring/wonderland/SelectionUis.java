@@ -0,0 +1,72 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Chooses the {@link WonderlandSelectionUi} from the system properties. The headless check deliberately avoids
+ * {@code java.awt}, so that server deployments never load it.
+ */
+final class SelectionUis {
+
+    private static final String HEADLESS_PROPERTY = "java.awt.headless";
+
+    private SelectionUis() {
+    }
+
+    static WonderlandSelectionUi configured() {
+        String rulesFile = System.getProperty(WonderlandSelectionUi.RULES_PROPERTY);
+        String ui = System.getProperty(WonderlandSelectionUi.UI_PROPERTY);
+        if (ui == null) {
+            ui = rulesFile != null ? "rules" : isHeadless() ? "console" : "swing";
+        }
+        switch (ui.trim().toLowerCase(Locale.ROOT)) {
+        case "swing":
+            return new SwingSelectionUi();
+        case "console":
+            return new ConsoleSelectionUi();
+        case "rules":
+            if (rulesFile == null) {
+                throw new IllegalStateException("Selection UI 'rules' requires the system property '"
+                        + WonderlandSelectionUi.RULES_PROPERTY + "' to point to a rules file");
+            }
+            return new RulesFileSelectionUi(Paths.get(rulesFile));
+        default:
+            throw new IllegalArgumentException("Unknown selection UI '" + ui + "', expected swing, console or rules");
+        }
+    }
+
+    static boolean isHeadless() {
+        String headless = System.getProperty(HEADLESS_PROPERTY);
+        if (headless != null) {
+            return Boolean.parseBoolean(headless);
+        }
+        String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        if (os.contains("windows") || os.contains("mac")) {
+            return false;
+        }
+        return isBlank(System.getenv("DISPLAY")) && isBlank(System.getenv("WAYLAND_DISPLAY"));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
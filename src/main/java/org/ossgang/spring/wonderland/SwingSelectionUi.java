@@ -0,0 +1,291 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.base.Throwables;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.Dialog.ModalityType;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The modal Swing dialog: a table with one row per category (the variant is chosen in a combo box editor) and per
+ * uncategorized profile, filtered while typing into the search field. Only the visible rows are rendered, so the
+ * dialog opens as fast for thousands of profiles as for a handful.
+ * <p>
+ * The dialog opens before the discovery is complete: the rows are added while the profiles are found, and the
+ * selection can be confirmed once the progress bar shows that all finders are done. From then on, the dialog shows
+ * how many configuration classes, bean methods and XML files the current selection activates, highlighting a
+ * selection activating none of them. If the discovery fails, the dialog shows the failure and throws it once it is
+ * closed.
+ */
+public class SwingSelectionUi implements WonderlandSelectionUi {
+
+    private static final int REFRESH_INTERVAL_MILLIS = 150;
+    private static final String TITLE = "Welcome to the Wonderland!";
+
+    @Override
+    public Optional<List<String>> select(SelectionModel model) {
+        return select(ProgressiveSelection.of(model));
+    }
+
+    @Override
+    public Optional<List<String>> select(ProgressiveSelection selection) {
+        SelectionPanel panel = new SelectionPanel(selection);
+        JDialog frame = new JDialog();
+        frame.setModalityType(ModalityType.APPLICATION_MODAL);
+        frame.setTitle(TITLE);
+        frame.setContentPane(panel);
+        frame.getRootPane().setDefaultButton(panel.closeButton);
+
+        panel.refresh.run();
+        if (!selection.isComplete()) {
+            panel.refresher.start();
+        }
+        frame.pack();
+        frame.setVisible(true);
+        panel.refresher.stop();
+
+        Optional<Throwable> failure = selection.getFailure();
+        if (failure.isPresent()) {
+            Throwables.throwIfUnchecked(failure.get());
+            throw new IllegalStateException("The profile discovery failed", failure.get());
+        }
+        if (!panel.confirmed.get()) {
+            return Optional.empty();
+        }
+        return Optional.of(panel.tableModel.getSelection());
+    }
+
+    /**
+     * Builds and lays out the dialog for the complete selection without showing it, so that the classes it needs are
+     * loaded (see {@link ClassDataSharing}). Without a display, only the Swing components are created.
+     */
+    void prepare(ProgressiveSelection selection) {
+        SelectionPanel panel = new SelectionPanel(selection);
+        panel.refresh.run();
+        selection.awaitModel();
+        panel.refresh.run();
+        if (GraphicsEnvironment.isHeadless()) {
+            panel.setSize(panel.getPreferredSize());
+            panel.validate();
+            return;
+        }
+        JDialog frame = new JDialog();
+        frame.setTitle(TITLE);
+        frame.setContentPane(panel);
+        frame.pack();
+        frame.dispose();
+    }
+
+    private static void showProgress(JProgressBar progressBar, ProgressiveSelection selection, boolean complete) {
+        progressBar.setVisible(!complete);
+        int finders = selection.getStartedFinders();
+        progressBar.setIndeterminate(finders == 0);
+        progressBar.setMaximum(Math.max(finders, 1));
+        progressBar.setValue(selection.getCompletedFinders());
+        progressBar.setString("Discovering profiles: " + selection.getDiscoveredProfileCount() + " found"
+                + (finders == 0 ? "" : ", " + selection.getCompletedFinders() + " of " + finders + " finders done"));
+    }
+
+    private static String describeActivation(Map<ProfileSource.Kind, Integer> counts) {
+        if (counts.isEmpty()) {
+            return "The selection activates no profile-dependent configuration";
+        }
+        StringJoiner description = new StringJoiner(", ", "Activates ", "");
+        counts.forEach((kind, count) -> description.add(count + " " + describe(kind, count)));
+        return description.toString();
+    }
+
+    private static String describe(ProfileSource.Kind kind, int count) {
+        String one;
+        switch (kind) {
+        case CLASS:
+            one = "configuration class";
+            break;
+        case METHOD:
+            one = "bean method";
+            break;
+        case XML_FILE:
+            one = "XML file";
+            break;
+        default:
+            one = "indexed package";
+        }
+        if (count == 1) {
+            return one;
+        }
+        return one.endsWith("s") ? one + "es" : one + "s";
+    }
+
+    private static void filter(TableRowSorter<ProfileSelectionTableModel> sorter, String text) {
+        sorter.setRowFilter(new RowFilter<ProfileSelectionTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends ProfileSelectionTableModel, ? extends Integer> entry) {
+                return entry.getModel().matches(entry.getIdentifier(), text);
+            }
+        });
+    }
+
+    /**
+     * The content of the dialog, refreshed from the selection while the discovery is running.
+     */
+    static final class SelectionPanel extends JPanel {
+        private static final long serialVersionUID = 1L;
+
+        final ProfileSelectionTableModel tableModel;
+        final JButton closeButton = new JButton("Make it so!");
+        final JLabel activationLabel = new JLabel(" ");
+        final AtomicBoolean confirmed = new AtomicBoolean(false);
+        final Timer refresher = new Timer(REFRESH_INTERVAL_MILLIS, null);
+        final Runnable refresh;
+
+        SelectionPanel(ProgressiveSelection selection) {
+            super(new BorderLayout(5, 5));
+            tableModel = new ProfileSelectionTableModel(selection.currentModel());
+            JTable table = new JTable(tableModel);
+            table.setRowHeight(24);
+            table.setFillsViewportHeight(true);
+            table.setPreferredScrollableViewportSize(new Dimension(600, 400));
+
+            TableColumn activeColumn = table.getColumnModel().getColumn(ProfileSelectionTableModel.ACTIVE_COLUMN);
+            activeColumn.setMaxWidth(30);
+            table.getColumnModel().getColumn(ProfileSelectionTableModel.VARIANT_COLUMN)
+                    .setCellEditor(new VariantCellEditor(tableModel));
+
+            TableRowSorter<ProfileSelectionTableModel> sorter = new TableRowSorter<>(tableModel);
+            table.setRowSorter(sorter);
+
+            JTextField filterField = new JTextField();
+            filterField.setToolTipText("Type to filter the profiles");
+            filterField.getDocument().addDocumentListener(new DocumentListener() {
+                @Override
+                public void insertUpdate(DocumentEvent e) {
+                    filter(sorter, filterField.getText());
+                }
+
+                @Override
+                public void removeUpdate(DocumentEvent e) {
+                    filter(sorter, filterField.getText());
+                }
+
+                @Override
+                public void changedUpdate(DocumentEvent e) {
+                    filter(sorter, filterField.getText());
+                }
+            });
+
+            JPanel filterPanel = new JPanel(new BorderLayout(5, 5));
+            filterPanel.add(new JLabel("Filter:"), BorderLayout.WEST);
+            filterPanel.add(filterField, BorderLayout.CENTER);
+
+            closeButton.setPreferredSize(new Dimension(400, 30));
+            JProgressBar progressBar = new JProgressBar();
+            progressBar.setStringPainted(true);
+            Runnable showActivation = () -> selection.getActivationPreview().ifPresent(preview -> {
+                List<String> profiles = tableModel.getSelection();
+                boolean activatesAnything = preview.activatesAnything(profiles);
+                activationLabel.setText(describeActivation(preview.activatedCountsByKind(profiles)));
+                activationLabel.setForeground(activatesAnything ? UIManager.getColor("Label.foreground") : Color.RED);
+            });
+            tableModel.addTableModelListener(e -> showActivation.run());
+            closeButton.addActionListener(e -> {
+                if (table.isEditing()) {
+                    table.getCellEditor().stopCellEditing();
+                }
+                confirmed.set(true);
+                Window window = SwingUtilities.getWindowAncestor(this);
+                window.setVisible(false);
+                window.dispose();
+            });
+
+            add(filterPanel, BorderLayout.NORTH);
+            add(new JScrollPane(table), BorderLayout.CENTER);
+            JPanel buttonPanel = new JPanel(new BorderLayout(5, 5));
+            JPanel statusPanel = new JPanel(new BorderLayout(5, 5));
+            statusPanel.add(progressBar, BorderLayout.NORTH);
+            statusPanel.add(activationLabel, BorderLayout.SOUTH);
+            buttonPanel.add(statusPanel, BorderLayout.NORTH);
+            buttonPanel.add(closeButton, BorderLayout.CENTER);
+            add(buttonPanel, BorderLayout.SOUTH);
+
+            AtomicLong shownVersion = new AtomicLong(-1);
+            refresh = () -> {
+                long version = selection.getVersion();
+                if (version == shownVersion.get() || table.isEditing()) {
+                    return;
+                }
+                boolean complete = selection.isComplete();
+                if (shownVersion.get() >= 0) {
+                    tableModel.update(selection.currentModel());
+                }
+                shownVersion.set(version);
+                showProgress(progressBar, selection, complete);
+                closeButton.setEnabled(complete);
+                if (complete) {
+                    refresher.stop();
+                    Optional<Throwable> failure = selection.getFailure();
+                    if (failure.isPresent()) {
+                        activationLabel.setText("The profile discovery failed: " + failure.get());
+                        activationLabel.setForeground(Color.RED);
+                        closeButton.setText("Close");
+                    } else {
+                        showActivation.run();
+                    }
+                }
+            };
+            refresher.addActionListener(e -> refresh.run());
+        }
+    }
+
+    /**
+     * A single combo box shared by all rows, filled with the variants of the edited category.
+     */
+    private static final class VariantCellEditor extends DefaultCellEditor {
+        private static final long serialVersionUID = 1L;
+
+        private final ProfileSelectionTableModel tableModel;
+        private final JComboBox<String> comboBox;
+
+        @SuppressWarnings("unchecked")
+        private VariantCellEditor(ProfileSelectionTableModel tableModel) {
+            super(new JComboBox<String>());
+            this.tableModel = tableModel;
+            this.comboBox = (JComboBox<String>) getComponent();
+        }
+
+        @Override
+        public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row,
+                                                     int column) {
+            List<String> variants = tableModel.variantsAt(table.convertRowIndexToModel(row));
+            comboBox.setModel(new DefaultComboBoxModel<>(variants.toArray(new String[0])));
+            return super.getTableCellEditorComponent(table, value, isSelected, row, column);
+        }
+    }
+}
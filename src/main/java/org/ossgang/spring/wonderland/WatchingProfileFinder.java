@@ -0,0 +1,360 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ClassUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Discovers the profiles of class files and {@code classpath*:} XML files like the other finders, then keeps them
+ * current by watching the classpath directories with a {@link WatchService}: only changed files are analyzed again
+ * and {@link ProfileChangeListener}s are notified about added and removed profiles. Jars are scanned once.
+ * <p>
+ * Meant for IDE and hot-reload workflows, where a selector is created again after every change: with the system
+ * property {@value #WATCH_PROPERTY} set to {@code true}, the default finders of {@link WonderlandContextSelector} are
+ * replaced by the {@link #shared()} instance, so later selectors reuse the watched state instead of scanning again.
+ */
+public class WatchingProfileFinder implements WonderlandProfileFinder, Closeable {
+
+    public static final String WATCH_PROPERTY = "wonderland.discovery.watch";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchingProfileFinder.class);
+
+    private static final String CLASSPATH_ALL_URL_PREFIX = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX;
+    private static final String CLASS_FILE_SUFFIX = ".class";
+    private static final long BATCH_MILLIS = 50;
+
+    private final ClassLoader classLoader;
+    private final List<ProfileChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final Map<Path, Set<String>> profilesByFile = new HashMap<>();
+    private final Set<Path> xmlFiles = new HashSet<>();
+    private final Map<WatchKey, WatchedDirectory> watchedDirectories = new HashMap<>();
+    private List<String> scanLocations;
+    private PrefixTrie packages;
+    private List<String> xmlPatterns;
+    private WatchService watchService;
+    private Set<String> profiles = ImmutableSet.of();
+
+    /**
+     * Watches the classpath of the thread context class loader, like {@link XmlProfileFinder#XmlProfileFinder()}.
+     */
+    public WatchingProfileFinder() {
+        this(ClassUtils.getDefaultClassLoader());
+    }
+
+    public WatchingProfileFinder(ClassLoader classLoader) {
+        this.classLoader = requireNonNull(classLoader, "classLoader must not be null");
+    }
+
+    public static WatchingProfileFinder shared() {
+        return SharedInstance.INSTANCE;
+    }
+
+    public void addListener(ProfileChangeListener listener) {
+        listeners.add(requireNonNull(listener, "listener must not be null"));
+    }
+
+    public void removeListener(ProfileChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+        if (!ImmutableList.copyOf(prefixes).equals(scanLocations)) {
+            start(prefixes);
+        }
+        return profiles;
+    }
+
+    @Override
+    public synchronized void close() {
+        stop();
+        scanLocations = null;
+    }
+
+    private void start(Collection<String> locations) {
+        stop();
+        scanLocations = ImmutableList.copyOf(locations);
+        List<String> packagePrefixes = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        for (String location : scanLocations) {
+            if (location.startsWith(CLASSPATH_ALL_URL_PREFIX)) {
+                patterns.add(location.substring(CLASSPATH_ALL_URL_PREFIX.length()));
+            } else {
+                packagePrefixes.add(location);
+            }
+        }
+        packages = PrefixTrie.ofPackagePaths(packagePrefixes);
+        xmlPatterns = patterns;
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to watch the classpath for profile changes", e);
+        }
+        for (ClassPathEntry entry : ClassPathEntry.of(classLoader)) {
+            Path root = entry.getFile().toPath();
+            if (entry.isJar()) {
+                profilesByFile.put(root, profilesOfJar(entry));
+            } else {
+                watchTree(root, root);
+            }
+        }
+        profiles = currentProfiles();
+
+        WatchService service = watchService;
+        Thread watcher = new Thread(() -> watch(service), "wonderland-profile-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        LOGGER.info("Watching " + watchedDirectories.size() + " classpath directories for profile changes");
+    }
+
+    private void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close the profile watch service", e);
+            }
+            watchService = null;
+        }
+        watchedDirectories.clear();
+        profilesByFile.clear();
+        xmlFiles.clear();
+        profiles = ImmutableSet.of();
+    }
+
+    private Set<String> profilesOfJar(ClassPathEntry entry) {
+        Set<String> jarProfiles = new HashSet<>(
+                new IndexedProfileFinder(classLoader).discoverSpringProfilesIn(entry, scanLocations));
+        jarProfiles.addAll(new XmlProfileFinder(classLoader).discoverSpringProfilesIn(entry, scanLocations));
+        return jarProfiles;
+    }
+
+    private void watchTree(Path root, Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+                        throws IOException {
+                    if (!xmlPatterns.isEmpty() || packages.mayContainMatchesBelow(resourceNameOf(root, directory))) {
+                        WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                        watchedDirectories.put(key, new WatchedDirectory(root, directory));
+                        return FileVisitResult.CONTINUE;
+                    }
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    analyze(root, file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOGGER.debug("Unable to visit " + file, e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOGGER.warn("Unable to watch classpath directory " + start + " for profile changes", e);
+        }
+    }
+
+    private void analyze(Path root, Path file) {
+        String resourceName = resourceNameOf(root, file);
+        if (ClassFileProfileFinder.isClassFileInMatchingPackage(resourceName, packages)) {
+            try {
+                profilesByFile.put(file, ProfileClassVisitor.profilesIn(Files.readAllBytes(file)));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Unable to read class file " + file + ", ignoring it until it changes again", e);
+                profilesByFile.remove(file);
+            }
+        } else if (xmlPatterns.stream().anyMatch(pattern -> pathMatcher.match(pattern, resourceName))) {
+            xmlFiles.add(file);
+            profilesByFile.put(file, profilesOfXml(file));
+        }
+    }
+
+    private Set<String> profilesOfXml(Path file) {
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        try {
+            return XmlProfileFinder.profilesIn(new FileSystemResource(file.toFile()), resolver,
+                    getClass().getSimpleName(), DiscoveryListener.NONE);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to read XML file " + file + ", ignoring it until it changes again", e);
+            return ImmutableSet.of();
+        }
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                List<WatchKey> keys = new ArrayList<>();
+                keys.add(service.take());
+                WatchKey next;
+                while ((next = service.poll(BATCH_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    keys.add(next);
+                }
+                Set<String> before;
+                Set<String> after;
+                synchronized (this) {
+                    if (service != watchService) {
+                        return;
+                    }
+                    before = profiles;
+                    try {
+                        process(keys);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Unable to process classpath changes, continuing to watch", e);
+                        keys.forEach(WatchKey::reset);
+                        profiles = currentProfiles();
+                    }
+                    after = profiles;
+                }
+                notifyListeners(before, after);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            LOGGER.debug("Stopped watching the classpath for profile changes");
+        }
+    }
+
+    private void process(List<WatchKey> keys) {
+        boolean xmlChanged = false;
+        for (WatchKey key : keys) {
+            WatchedDirectory watched = watchedDirectories.get(key);
+            if (watched == null) {
+                continue;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    LOGGER.debug("Missed file events in " + watched.directory + ", rescanning " + watched.root);
+                    forget(watched.root);
+                    watchTree(watched.root, watched.root);
+                    xmlChanged = true;
+                    continue;
+                }
+                Path file = watched.directory.resolve((Path) event.context());
+                xmlChanged |= xmlFiles.contains(file);
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    forget(file);
+                } else if (Files.isDirectory(file)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        watchTree(watched.root, file);
+                    }
+                } else {
+                    analyze(watched.root, file);
+                    xmlChanged |= xmlFiles.contains(file);
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+        if (xmlChanged) {
+            xmlFiles.forEach(xmlFile -> profilesByFile.put(xmlFile, profilesOfXml(xmlFile)));
+        }
+        profiles = currentProfiles();
+    }
+
+    private void forget(Path path) {
+        profilesByFile.keySet().removeIf(file -> file.startsWith(path));
+        xmlFiles.removeIf(file -> file.startsWith(path));
+    }
+
+    private Set<String> currentProfiles() {
+        ImmutableSet.Builder<String> current = ImmutableSet.builder();
+        profilesByFile.values().forEach(current::addAll);
+        return current.build();
+    }
+
+    private void notifyListeners(Set<String> before, Set<String> after) {
+        Set<String> added = ImmutableSet.copyOf(Sets.difference(after, before));
+        Set<String> removed = ImmutableSet.copyOf(Sets.difference(before, after));
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Spring profiles changed, added: " + added + ", removed: " + removed);
+        for (ProfileChangeListener listener : listeners) {
+            try {
+                listener.profilesChanged(added, removed);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Profile change listener " + listener + " failed", e);
+            }
+        }
+    }
+
+    private static String resourceNameOf(Path root, Path path) {
+        return root.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private static final class WatchedDirectory {
+        private final Path root;
+        private final Path directory;
+
+        private WatchedDirectory(Path root, Path directory) {
+            this.root = root;
+            this.directory = directory;
+        }
+    }
+
+    private static final class SharedInstance {
+        private static final WatchingProfileFinder INSTANCE = new WatchingProfileFinder();
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.AnnotatedBeanDefinitionReader;
+import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Hands the profile selection of a {@link WonderlandContextSelector} to a Spring context: the selected profiles are
+ * set as active profiles of its {@link ConfigurableEnvironment} (unless already configured there, e.g. by
+ * {@code -Dspring.profiles.active}), and the classes and XML files which declared the profiles during discovery are
+ * registered as bean definitions, so that Spring does not have to scan for them again. Profiles read from a profile
+ * index are only known by package: these packages are scanned for classes using {@link Profile}.
+ * <p>
+ * The profile conditions are evaluated by Spring as usual; registering a source only makes it a candidate.
+ * <p>
+ * The initializer replaces the application's own scan or import of these sources, it does not complement it: classes
+ * and XML files already registered in the context when it is refreshed are skipped, but sources the application only
+ * imports later (e.g. by {@code @Import}, {@code @ImportResource} or {@code @ComponentScan}) would be registered twice
+ * and fail the refresh if bean definition overriding is disabled. A class which only declares profiles on its
+ * {@code @Bean} methods is registered only if it is a {@link Component} (e.g. a {@code @Configuration}) itself,
+ * otherwise it is left to the application to import it.
+ */
+public class WonderlandContextInitializer implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WonderlandContextInitializer.class);
+
+    private final WonderlandContextSelector selector;
+    private final List<String> profiles;
+
+    WonderlandContextInitializer(WonderlandContextSelector selector) {
+        this.selector = requireNonNull(selector, "selector must not be null");
+        this.profiles = null;
+    }
+
+    /**
+     * Activates exactly the given profiles (even none) instead of asking the selector for a selection.
+     */
+    WonderlandContextInitializer(WonderlandContextSelector selector, List<String> profiles) {
+        this.selector = requireNonNull(selector, "selector must not be null");
+        this.profiles = ImmutableList.copyOf(profiles);
+    }
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        ConfigurableEnvironment environment = context.getEnvironment();
+        List<String> activeProfiles = Arrays.asList(environment.getActiveProfiles());
+        if (profiles != null) {
+            activeProfiles = profiles;
+            environment.setActiveProfiles(activeProfiles.toArray(new String[0]));
+        } else if (activeProfiles.isEmpty()) {
+            activeProfiles = selector.selectOrExit();
+            LOGGER.info("Activating the following spring profiles in " + context.getDisplayName() + ": "
+                    + activeProfiles);
+            environment.setActiveProfiles(activeProfiles.toArray(new String[0]));
+        } else {
+            LOGGER.info("Spring profiles " + activeProfiles + " already active. No selection will be asked for.");
+        }
+        Set<ProfileSource> sources = selector.getProfileSources().sourcesActivatedBy(activeProfiles);
+        context.addBeanFactoryPostProcessor(new SourceRegistrar(context, sources));
+    }
+
+    private static final class SourceRegistrar implements BeanDefinitionRegistryPostProcessor {
+        private final ConfigurableApplicationContext context;
+        private final Collection<ProfileSource> sources;
+
+        private SourceRegistrar(ConfigurableApplicationContext context, Collection<ProfileSource> sources) {
+            this.context = context;
+            this.sources = sources;
+        }
+
+        @Override
+        public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) {
+            ConfigurableEnvironment environment = context.getEnvironment();
+            AnnotatedBeanDefinitionReader classReader = new AnnotatedBeanDefinitionReader(registry, environment);
+            XmlBeanDefinitionReader xmlReader = new XmlBeanDefinitionReader(registry);
+            xmlReader.setEnvironment(environment);
+            xmlReader.setResourceLoader(context);
+            Set<String> registeredClassNames = new HashSet<>();
+            Set<String> loadedXmlFiles = new HashSet<>();
+            for (String beanName : registry.getBeanDefinitionNames()) {
+                BeanDefinition definition = registry.getBeanDefinition(beanName);
+                if (definition.getBeanClassName() != null) {
+                    registeredClassNames.add(definition.getBeanClassName());
+                }
+                if (definition instanceof AbstractBeanDefinition) {
+                    Resource resource = ((AbstractBeanDefinition) definition).getResource();
+                    if (resource != null) {
+                        loadedXmlFiles.add(urlOf(resource));
+                    }
+                }
+            }
+            Set<String> classNames = new LinkedHashSet<>();
+            Set<String> methodClassNames = new LinkedHashSet<>();
+            Set<String> xmlFiles = new LinkedHashSet<>();
+            Set<String> packages = new LinkedHashSet<>();
+            for (ProfileSource source : sources) {
+                switch (source.getKind()) {
+                case CLASS:
+                    classNames.add(source.getLocation());
+                    break;
+                case METHOD:
+                    methodClassNames.add(source.getLocation());
+                    break;
+                case XML_FILE:
+                    xmlFiles.add(source.getLocation());
+                    break;
+                case PACKAGE:
+                    packages.add(source.getLocation());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown source kind " + source.getKind());
+                }
+            }
+            methodClassNames.removeAll(classNames);
+            classNames.removeAll(registeredClassNames);
+            methodClassNames.removeAll(registeredClassNames);
+            xmlFiles.removeAll(loadedXmlFiles);
+
+            xmlFiles.forEach(url -> loadXmlFile(xmlReader, url));
+            classNames.forEach(className -> loadClass(className).ifPresent(classReader::registerBean));
+            int componentCount = 0;
+            for (String className : methodClassNames) {
+                Optional<Class<?>> componentClass = loadClass(className)
+                        .filter(WonderlandContextInitializer::isComponent);
+                if (componentClass.isPresent()) {
+                    classReader.registerBean(componentClass.get());
+                    componentCount++;
+                } else {
+                    LOGGER.debug("Not registering " + className + ", its profiled methods are only used if the "
+                            + "application imports it");
+                }
+            }
+            if (!packages.isEmpty()) {
+                scanPackages(registry, environment, packages);
+            }
+            LOGGER.debug("Registered " + (classNames.size() + componentCount) + " classes and " + xmlFiles.size()
+                    + " XML files and scanned " + packages.size() + " packages declaring the active profiles");
+        }
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            /* everything is registered as bean definitions */
+        }
+
+        private Optional<Class<?>> loadClass(String className) {
+            try {
+                return Optional.of(ClassUtils.forName(className, context.getClassLoader()));
+            } catch (ClassNotFoundException | LinkageError e) {
+                LOGGER.warn("Unable to load " + className + " declaring a spring profile, skipping it", e);
+                return Optional.empty();
+            }
+        }
+
+        private static String urlOf(Resource resource) {
+            try {
+                return resource.getURL().toString();
+            } catch (IOException e) {
+                return resource.getDescription();
+            }
+        }
+
+        private static void loadXmlFile(XmlBeanDefinitionReader reader, String url) {
+            try {
+                reader.loadBeanDefinitions(new UrlResource(url));
+            } catch (IOException e) {
+                throw new RuntimeException("Invalid XML file location " + url, e);
+            }
+        }
+
+        private static void scanPackages(BeanDefinitionRegistry registry, ConfigurableEnvironment environment,
+                                         Collection<String> packages) {
+            ClassPathBeanDefinitionScanner scanner = new ClassPathBeanDefinitionScanner(registry, false,
+                    environment);
+            scanner.addIncludeFilter((metadataReader, metadataReaderFactory) -> {
+                AnnotationMetadata metadata = metadataReader.getAnnotationMetadata();
+                return metadata.hasAnnotation(Profile.class.getName())
+                        || metadata.hasAnnotatedMethods(Profile.class.getName());
+            });
+            scanner.scan(packages.toArray(new String[0]));
+        }
+    }
+
+    private static boolean isComponent(Class<?> type) {
+        return AnnotatedElementUtils.hasAnnotation(type, Component.class);
+    }
+}
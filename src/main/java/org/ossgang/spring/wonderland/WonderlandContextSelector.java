@@ -18,29 +18,27 @@
 
 package org.ossgang.spring.wonderland;
 
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
-import javax.swing.*;
-import java.awt.*;
-import java.awt.Dialog.ModalityType;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static java.util.Arrays.asList;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toSet;
 
 public class WonderlandContextSelector {
@@ -50,19 +48,31 @@ public class WonderlandContextSelector {
     private static final Logger LOGGER = LoggerFactory.getLogger(WonderlandContextSelector.class);
 
     private static final List<String> DEFAULT_SCAN_LOCATIONS = asList("mpe", "cern", "classpath*:**/wonderland-*.xml");
-    private static final String CATEGORY_SEPARATOR = ".";
-    private static final String SPLIT_REGEX = "\\.";
     private static final String DEFAULT_DEMO_PREFIX = "demo";
     private static final String DEFAULT_PRO_PREFIX = "pro";
-    private final Set<String> collectedProfiles;
-    private final Set<String> defaultProfiles;
-    private final boolean allowDisablingCategories;
+    private static final DiscoveryRegistry<RunningDiscovery> DISCOVERIES = new DiscoveryRegistry<>(
+            discovery -> discovery.result);
 
-    private WonderlandContextSelector(Set<String> defaultProfiles, Set<String> collectedProfiles, boolean allowDisablingCategories) {
-        requireNonNull(defaultProfiles, "defaultProfiles must not be null");
-        this.defaultProfiles = defaultProfiles.stream().map(String::trim).collect(toSet());
-        this.collectedProfiles = collectedProfiles;
+    private final Supplier<RunningDiscovery> discovery;
+    private final Function<ProfileRegistry, Set<String>> defaultProfiles;
+    private final boolean allowDisablingCategories;
+    private final WonderlandSelectionUi selectionUi;
+    private final boolean hierarchicalCategories;
+    private final SelectionStore selectionStore;
+    private final SelectionStore.Mode selectionStoreMode;
+
+    private WonderlandContextSelector(Function<ProfileRegistry, Set<String>> defaultProfiles,
+                                      Supplier<RunningDiscovery> discovery, boolean allowDisablingCategories,
+                                      WonderlandSelectionUi selectionUi, boolean hierarchicalCategories,
+                                      SelectionStore selectionStore, SelectionStore.Mode selectionStoreMode) {
+        this.defaultProfiles = profiles -> defaultProfiles.apply(profiles).stream().map(String::trim)
+                .collect(toSet());
+        this.discovery = discovery;
         this.allowDisablingCategories = allowDisablingCategories;
+        this.selectionUi = selectionUi;
+        this.hierarchicalCategories = hierarchicalCategories;
+        this.selectionStore = selectionStore;
+        this.selectionStoreMode = selectionStoreMode;
     }
 
     public static WonderlandContextSelector create() {
@@ -74,12 +84,66 @@ public class WonderlandContextSelector {
     }
 
     public static WonderlandContextSelector create(Collection<String> profileScanLocations) {
-        List<WonderlandProfileFinder> finders = asList(new AnnotationProfileFinder(), new XmlProfileFinder());
-        return new WonderlandContextSelector(ImmutableSet.of(), collectProfiles(profileScanLocations, finders), true);
+        return create(profileScanLocations, defaultFinders());
     }
 
+    /**
+     * Creates a selector discovering the profiles on first use, so nothing is scanned if the profiles turn out to be
+     * configured already.
+     */
     public static WonderlandContextSelector create(Collection<String> profileScanLocations, Collection<WonderlandProfileFinder> finders) {
-        return new WonderlandContextSelector(ImmutableSet.of(), collectProfiles(profileScanLocations, finders), true);
+        List<String> locations = ImmutableList.copyOf(profileScanLocations);
+        List<WonderlandProfileFinder> profileFinders = ImmutableList.copyOf(finders);
+        return new WonderlandContextSelector(profiles -> ImmutableSet.of(),
+                Suppliers.memoize(() -> discover(locations, profileFinders)), true, null, false, null, null);
+    }
+
+    public static CompletableFuture<WonderlandContextSelector> createAsync() {
+        return createAsync(DEFAULT_SCAN_LOCATIONS);
+    }
+
+    public static CompletableFuture<WonderlandContextSelector> createAsync(String... profileScanLocations) {
+        return createAsync(asList(profileScanLocations));
+    }
+
+    public static CompletableFuture<WonderlandContextSelector> createAsync(Collection<String> profileScanLocations) {
+        return createAsync(profileScanLocations, defaultFinders());
+    }
+
+    public static CompletableFuture<WonderlandContextSelector> createAsync(Collection<String> profileScanLocations,
+                                                                         Collection<WonderlandProfileFinder> finders) {
+        RunningDiscovery discovery = discover(profileScanLocations, finders);
+        return discovery.result.thenApply(discovered -> new WonderlandContextSelector(profiles -> ImmutableSet.of(),
+                () -> discovery, true, null, false, null, null));
+    }
+
+    private static RunningDiscovery discover(Collection<String> profileScanLocations,
+                                             Collection<WonderlandProfileFinder> finders) {
+        return DISCOVERIES.discover(profileScanLocations, finders,
+                () -> startDiscovery(profileScanLocations, finders));
+    }
+
+    private static RunningDiscovery startDiscovery(Collection<String> profileScanLocations,
+                                                   Collection<WonderlandProfileFinder> finders) {
+        DiscoveryStatistics statistics = new DiscoveryStatistics();
+        ProfileSourceIndex sources = new ProfileSourceIndex();
+        DiscoveryProgress progress = new DiscoveryProgress();
+        return new RunningDiscovery(progress, collectProfiles(profileScanLocations, finders,
+                DiscoveryListener.combined(statistics, sources, progress))
+                .thenApply(profiles -> {
+                    statistics.publish();
+                    sources.namingViolations().forEach((profile, declaringSources) -> LOGGER.warn("Spring profile '"
+                            + profile + "' does not follow the <category>.<variant> naming scheme, declared in "
+                            + declaringSources));
+                    return new DiscoveredProfiles(profiles, statistics.report(), sources);
+                }));
+    }
+
+    private static List<WonderlandProfileFinder> defaultFinders() {
+        if (Boolean.getBoolean(WatchingProfileFinder.WATCH_PROPERTY)) {
+            return Collections.singletonList(WatchingProfileFinder.shared());
+        }
+        return asList(new IndexedProfileFinder(), new XmlProfileFinder());
     }
 
     public WonderlandContextSelector defaultProfiles(String... newDefaultProfiles) {
@@ -87,14 +151,24 @@ public class WonderlandContextSelector {
     }
 
     public WonderlandContextSelector defaultProfiles(Set<String> newDefaultProfiles) {
-        return new WonderlandContextSelector(newDefaultProfiles, collectedProfiles, allowDisablingCategories);
+        requireNonNull(newDefaultProfiles, "defaultProfiles must not be null");
+        return new WonderlandContextSelector(profiles -> newDefaultProfiles, discovery, allowDisablingCategories,
+                selectionUi, hierarchicalCategories, selectionStore, selectionStoreMode);
     }
 
     public WonderlandContextSelector defaultProfilesWithPrefix(String prefix) {
-        Set<String> filteredProfiles = collectedProfiles.stream()
-                .filter(p -> p.contains(CATEGORY_SEPARATOR + prefix))
-                .collect(toSet());
-        return new WonderlandContextSelector(filteredProfiles, collectedProfiles, allowDisablingCategories);
+        return new WonderlandContextSelector(profiles -> namesOf(profiles.profilesWithPrefix(prefix)), discovery,
+                allowDisablingCategories, selectionUi, hierarchicalCategories, selectionStore, selectionStoreMode);
+    }
+
+    /**
+     * Uses the profiles below the given dot-separated path whose last segment is the given one as defaults, e.g. all
+     * {@code pro} profiles below {@code accelerator.rf}.
+     */
+    public WonderlandContextSelector defaultProfilesBelow(String path, String lastSegment) {
+        return new WonderlandContextSelector(profiles -> namesOf(profilesBelow(profiles, path, lastSegment)),
+                discovery, allowDisablingCategories, selectionUi, hierarchicalCategories, selectionStore,
+                selectionStoreMode);
     }
 
     public WonderlandContextSelector defaultDemoProfiles() {
@@ -106,7 +180,64 @@ public class WonderlandContextSelector {
     }
 
     public WonderlandContextSelector withoutDisablingOfCategories() {
-        return new WonderlandContextSelector(defaultProfiles, collectedProfiles, false);
+        return new WonderlandContextSelector(defaultProfiles, discovery, false, selectionUi, hierarchicalCategories,
+                selectionStore, selectionStoreMode);
+    }
+
+    /**
+     * Groups the profiles in the selection by their parent path instead of their first segment, so that e.g.
+     * {@code accelerator.rf.pro} and {@code accelerator.rf.demo} are the variants of {@code accelerator.rf} and
+     * can be chosen independently of {@code accelerator.vacuum.pro}.
+     */
+    public WonderlandContextSelector withHierarchicalCategories() {
+        return new WonderlandContextSelector(defaultProfiles, discovery, allowDisablingCategories, selectionUi, true,
+                selectionStore, selectionStoreMode);
+    }
+
+    public WonderlandContextSelector withSelectionUi(WonderlandSelectionUi newSelectionUi) {
+        requireNonNull(newSelectionUi, "selectionUi must not be null");
+        return new WonderlandContextSelector(defaultProfiles, discovery, allowDisablingCategories, newSelectionUi,
+                hierarchicalCategories, selectionStore, selectionStoreMode);
+    }
+
+    /**
+     * Remembers every confirmed selection of the given application (see {@link SelectionStore#forApplication(String)})
+     * and uses the last one on the next start as given by the mode.
+     */
+    public WonderlandContextSelector withStoredSelection(String applicationId, SelectionStore.Mode mode) {
+        return withStoredSelection(SelectionStore.forApplication(applicationId), mode);
+    }
+
+    public WonderlandContextSelector withStoredSelection(SelectionStore store, SelectionStore.Mode mode) {
+        requireNonNull(store, "store must not be null");
+        requireNonNull(mode, "mode must not be null");
+        return new WonderlandContextSelector(defaultProfiles, discovery, allowDisablingCategories, selectionUi,
+                hierarchicalCategories, store, mode);
+    }
+
+    public DiscoveryReport getDiscoveryReport() {
+        return discovered().report;
+    }
+
+    /**
+     * The classes, methods and XML files declaring the discovered profiles, discovering them if not done yet.
+     */
+    public ProfileSourceIndex getProfileSources() {
+        return discovered().sources;
+    }
+
+    /**
+     * Evaluates which of the discovered sources a selection activates, discovering the profiles if not done yet.
+     */
+    public ActivationPreview getActivationPreview() {
+        return discovered().activationPreview.get();
+    }
+
+    /**
+     * The discovered profiles, discovering them if not done yet.
+     */
+    public ProfileRegistry getProfileRegistry() {
+        return discovered().profiles;
     }
 
     public void showSelectionIfUnconfigured() {
@@ -114,23 +245,112 @@ public class WonderlandContextSelector {
         if (activeProfiles != null) {
             LOGGER.info("property '" + SPRING_PROFILES_ACTIVE + "' is already set. No selection dialog will be shown.");
         } else {
-            LOGGER.info("Showing user input dialog for spring profile selection.");
-            List<String> selectedProfiles = showProfileSelectionDialog();
-            setActiveProfiles(selectedProfiles);
+            setActiveProfiles(selectOrExit());
         }
         logActiveProfiles();
     }
 
+    /**
+     * An initializer activating the selected profiles in the environment of the initialized context (asking for the
+     * selection if none is configured there) and registering the sources of the profiles found during discovery as
+     * bean definitions. Unlike {@link #showSelectionIfUnconfigured()}, no system property is set.
+     */
+    public WonderlandContextInitializer contextInitializer() {
+        return new WonderlandContextInitializer(this);
+    }
+
+    /**
+     * Creates and refreshes an annotation config context of the given classes, initialized by the
+     * {@link #contextInitializer()}.
+     */
+    public AnnotationConfigApplicationContext createApplicationContext(Class<?>... componentClasses) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        if (componentClasses.length > 0) {
+            context.register(componentClasses);
+        }
+        contextInitializer().initialize(context);
+        context.refresh();
+        return context;
+    }
+
+    List<String> selectOrExit() {
+        Optional<List<String>> storedProfiles = selectionStore != null ? selectionStore.load() : Optional.empty();
+        if (storedProfiles.isPresent()) {
+            Set<String> unknownProfiles = new LinkedHashSet<>(storedProfiles.get());
+            unknownProfiles.removeAll(getProfileRegistry().getProfileNames());
+            if (!unknownProfiles.isEmpty()) {
+                LOGGER.warn("The stored profile selection contains the profiles " + unknownProfiles
+                        + ", which were not discovered anymore. Ignoring it.");
+                storedProfiles = Optional.empty();
+            } else if (SelectionStore.configuredMode(selectionStoreMode) == SelectionStore.Mode.REUSE) {
+                LOGGER.info("Reusing the stored profile selection from " + selectionStore.getFile() + ".");
+                return storedProfiles.get();
+            }
+        }
+
+        Function<ProfileRegistry, Set<String>> preselectedProfiles = storedProfiles
+                .<Function<ProfileRegistry, Set<String>>>map(stored -> profiles -> ImmutableSet.copyOf(stored))
+                .orElse(defaultProfiles);
+        WonderlandSelectionUi ui = selectionUi != null ? selectionUi : SelectionUis.configured();
+        LOGGER.info("Asking for the spring profile selection using " + ui.getClass().getSimpleName() + ".");
+        Optional<List<String>> selectedProfiles = ui.select(progressiveSelection(preselectedProfiles));
+        if (!selectedProfiles.isPresent()) {
+            LOGGER.info("Profile selection cancelled. Exiting application.");
+            System.exit(0);
+            return ImmutableList.of();
+        }
+        ActivationPreview preview = getActivationPreview();
+        if (preview.hasSources() && !preview.activatesAnything(selectedProfiles.get())) {
+            LOGGER.warn("The selected profiles " + selectedProfiles.get() + " activate none of the "
+                    + preview.getSourceCount() + " discovered configuration sources declaring profiles");
+        }
+        if (selectionStore != null) {
+            selectionStore.save(selectedProfiles.get());
+        }
+        return selectedProfiles.get();
+    }
+
+    ProgressiveSelection progressiveSelection() {
+        return progressiveSelection(defaultProfiles);
+    }
+
+    private ProgressiveSelection progressiveSelection(Function<ProfileRegistry, Set<String>> preselectedProfiles) {
+        RunningDiscovery running = discovery.get();
+        return new ProgressiveSelection(running.progress, running.result.thenApply(discovered -> discovered.profiles),
+                profiles -> selectionModel(profiles, preselectedProfiles.apply(profiles)),
+                running.result.thenApply(discovered -> discovered.activationPreview.get()));
+    }
+
+    SelectionModel selectionModel() {
+        ProfileRegistry profiles = getProfileRegistry();
+        return selectionModel(profiles, defaultProfiles.apply(profiles));
+    }
+
+    private SelectionModel selectionModel(ProfileRegistry profiles, Set<String> preselectedProfiles) {
+        return SelectionModel.of(profiles, preselectedProfiles, allowDisablingCategories, hierarchicalCategories);
+    }
+
+    private DiscoveredProfiles discovered() {
+        return AsyncWonderlandProfileFinder.await(discovery.get().result);
+    }
+
     private void setActiveProfiles(List<String> selectedProfiles) {
         LOGGER.info("Setting the following spring profiles as active: " + selectedProfiles);
         System.setProperty(SPRING_PROFILES_ACTIVE, String.join(",", selectedProfiles));
     }
 
     public void selectProfilesWithPrefix(String prefix) {
-        List<String> filteredProfiles = collectedProfiles.stream()
-                .filter(p -> p.contains(CATEGORY_SEPARATOR + prefix))
-                .collect(toList());
-        setActiveProfiles(filteredProfiles);
+        setActiveProfiles(ImmutableList.copyOf(namesOf(getProfileRegistry().profilesWithPrefix(prefix))));
+    }
+
+    public void selectProfilesBelow(String path, String lastSegment) {
+        setActiveProfiles(ImmutableList.copyOf(namesOf(profilesBelow(getProfileRegistry(), path, lastSegment))));
+    }
+
+    private static List<WonderlandProfile> profilesBelow(ProfileRegistry profiles, String path, String lastSegment) {
+        return profiles.getTree().node(path)
+                .map(node -> node.getProfilesEndingWith(lastSegment))
+                .orElseGet(ImmutableList::of);
     }
 
     public void selectProProfiles() {
@@ -141,106 +361,61 @@ public class WonderlandContextSelector {
         selectProfilesWithPrefix(DEFAULT_DEMO_PREFIX);
     }
 
-    private List<String> showProfileSelectionDialog() {
-        Set<String> filtered = collectedProfiles;
+    static CompletableFuture<ProfileRegistry> collectProfiles(Collection<String> profileScanLocations, Collection<WonderlandProfileFinder> finders,
+                                                          DiscoveryListener listener) {
+        LOGGER.info("Collecting all Spring profiles");
+        return new CompositeProfileFinder(CachingProfileFinder.withConfiguredCache(finders))
+                .discoverSpringProfilesAsync(profileScanLocations, listener)
+                .thenApply(profiles -> ProfileRegistry.of(normalizeProfiles(profiles)));
+    }
 
-        List<String> uncategorizedProfiles = new ArrayList<>();
-        Map<String, List<String>> profilesByCategory = new HashMap<>();
-        for (String profile : filtered) {
-            String[] split = profile.split(SPLIT_REGEX, 2);
-            if (split.length == 2) {
-                profilesByCategory.computeIfAbsent(split[0], s -> new ArrayList<>()).add(split[1]);
-            } else {
-                uncategorizedProfiles.add(profile);
-            }
-        }
+    private static Set<String> namesOf(Collection<WonderlandProfile> profiles) {
+        return profiles.stream().map(WonderlandProfile::getName).collect(toCollection(LinkedHashSet::new));
+    }
 
-        Set<String> defaultUncategorized = new HashSet<>();
-        Map<String, String> defaultCategorized = new HashMap<>();
-        for (String profile : defaultProfiles) {
-            String[] split = profile.split(SPLIT_REGEX, 2);
-            if (split.length == 2) {
-                String category = split[0];
-                if (defaultCategorized.containsKey(category)) {
-                    throw new IllegalStateException(
-                            "More than one default profiles defined for category '" + category + "'!");
-                }
-                defaultCategorized.put(category, split[1]);
-            } else {
-                defaultUncategorized.add(profile);
-            }
+    private static Set<String> normalizeProfiles(Collection<String> profiles) {
+        return profiles.stream().flatMap(profile -> profileNamesIn(profile).stream()).collect(Collectors.toSet());
+    }
+
+    /**
+     * The profiles referenced by a discovered profile expression, e.g. {@code db.pro} and {@code gui.pro} for
+     * {@code db.pro & !gui.pro}. Malformed expressions reference nothing; they are reported as naming violations by
+     * the {@link ProfileSourceIndex}.
+     */
+    static Set<String> profileNamesIn(String expression) {
+        try {
+            return ProfileExpression.parse(expression).getProfileNames();
+        } catch (IllegalArgumentException e) {
+            return ImmutableSet.of();
         }
+    }
 
-        List<ProfileChooserSelectionPanel> categorySelectors = profilesByCategory.entrySet().stream().map(
-                e -> new ProfileChooserSelectionPanel(e.getKey(), e.getValue(), defaultCategorized.get(e.getKey()),
-                        allowDisablingCategories))
-                .collect(toList());
+    private void logActiveProfiles() {
+        LOGGER.info(SPRING_PROFILES_ACTIVE + "=" + System.getProperty(SPRING_PROFILES_ACTIVE));
+    }
 
-        List<ProfileEnableDisableSelectionPanel> uncategorizedSelectors = Collections.emptyList();
-        if (allowDisablingCategories) {
-            uncategorizedSelectors = uncategorizedProfiles.stream()
-                    .map(p -> new ProfileEnableDisableSelectionPanel(p, defaultUncategorized.contains(p)))
-                    .collect(toList());
-        }
+    private static final class RunningDiscovery {
+        private final DiscoveryProgress progress;
+        private final CompletableFuture<DiscoveredProfiles> result;
 
-        JPanel selectorsPanel = new JPanel(new GridLayout(0, 1, 5, 5));
-        categorySelectors.forEach(selectorsPanel::add);
-        uncategorizedSelectors.forEach(selectorsPanel::add);
-
-        JScrollPane selectorsScrollPanel = new JScrollPane(selectorsPanel);
-        selectorsScrollPanel.getVerticalScrollBar().setUnitIncrement(10);
-
-        JDialog frame = new JDialog();
-
-        JButton closeButton = new JButton("Make it so!");
-        closeButton.setPreferredSize(new Dimension(400, 30));
-        AtomicBoolean confirmed = new AtomicBoolean(false);
-        closeButton.addActionListener(e -> {
-            confirmed.set(true);
-            frame.setVisible(false);
-            frame.dispose();
-        });
-
-        frame.setModalityType(ModalityType.APPLICATION_MODAL);
-        frame.setTitle("Welcome to the Wonderland!");
-        frame.setLayout(new BorderLayout(5, 5));
-        frame.add(selectorsScrollPanel, BorderLayout.CENTER);
-        frame.add(closeButton, BorderLayout.SOUTH);
-        frame.pack();
-        frame.setVisible(true);
-
-        if (!confirmed.get()) {
-            LOGGER.info("Selector window closed without confirming. Exiting application.");
-            System.exit(0);
+        private RunningDiscovery(DiscoveryProgress progress, CompletableFuture<DiscoveredProfiles> result) {
+            this.progress = progress;
+            this.result = result;
         }
-
-        return Stream.concat(categorySelectors.stream(), uncategorizedSelectors.stream())
-                .map(ProfileSelector::getSelectedProfile)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(toList());
     }
 
-    private static Set<String> collectProfiles(Collection<String> profileScanLocations, Collection<WonderlandProfileFinder> finders) {
-        LOGGER.info("Collecting all Spring profiles");
-        Collection<String> profiles = finders.stream()
-                .flatMap(f -> f.discoverSpringProfilesIn(profileScanLocations).stream())
-                .collect(Collectors.toSet());
-
-        return profiles.stream().map(String::trim).map(s -> {
-            if (s.startsWith("!")) {
-                if (s.length() > 1) {
-                    return Optional.of(s.substring(1));
-                } else {
-                    return Optional.<String>empty();
-                }
-            } else {
-                return Optional.of(s);
-            }
-        }).filter(Optional::isPresent).map(Optional::get).collect(Collectors.toSet());
-    }
+    private static final class DiscoveredProfiles {
+        private final ProfileRegistry profiles;
+        private final DiscoveryReport report;
+        private final ProfileSourceIndex sources;
 
-    private void logActiveProfiles() {
-        LOGGER.info(SPRING_PROFILES_ACTIVE + "=" + System.getProperty(SPRING_PROFILES_ACTIVE));
+        private final Supplier<ActivationPreview> activationPreview;
+
+        private DiscoveredProfiles(ProfileRegistry profiles, DiscoveryReport report, ProfileSourceIndex sources) {
+            this.profiles = profiles;
+            this.report = report;
+            this.sources = sources;
+            this.activationPreview = Suppliers.memoize(() -> ActivationPreview.of(profiles, sources));
+        }
     }
 }
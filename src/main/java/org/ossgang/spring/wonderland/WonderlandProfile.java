@@ -0,0 +1,100 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A Spring profile split into its category, the part in front of the first dot, and its variant, e.g. {@code db} and
+ * {@code pro} for {@code db.pro}. Profiles without a dot are uncategorized. The tokens are split once and interned, so
+ * the many profiles sharing a category also share its string.
+ */
+public final class WonderlandProfile implements Comparable<WonderlandProfile> {
+
+    private static final char CATEGORY_SEPARATOR = '.';
+    private static final Interner<String> TOKENS = Interners.newWeakInterner();
+
+    private final String name;
+    private final String category;
+    private final String variant;
+
+    private WonderlandProfile(String name, String category, String variant) {
+        this.name = name;
+        this.category = category;
+        this.variant = variant;
+    }
+
+    public static WonderlandProfile of(String name) {
+        requireNonNull(name, "name must not be null");
+        int separator = name.indexOf(CATEGORY_SEPARATOR);
+        if (separator < 0) {
+            return new WonderlandProfile(TOKENS.intern(name), null, null);
+        }
+        return new WonderlandProfile(name, TOKENS.intern(name.substring(0, separator)),
+                TOKENS.intern(name.substring(separator + 1)));
+    }
+
+    public static WonderlandProfile of(String category, String variant) {
+        requireNonNull(category, "category must not be null");
+        requireNonNull(variant, "variant must not be null");
+        return new WonderlandProfile(category + CATEGORY_SEPARATOR + variant, TOKENS.intern(category),
+                TOKENS.intern(variant));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isCategorized() {
+        return category != null;
+    }
+
+    public Optional<String> getCategory() {
+        return Optional.ofNullable(category);
+    }
+
+    public Optional<String> getVariant() {
+        return Optional.ofNullable(variant);
+    }
+
+    @Override
+    public int compareTo(WonderlandProfile other) {
+        return name.compareTo(other.name);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof WonderlandProfile && name.equals(((WonderlandProfile) other).name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -23,4 +23,8 @@ import java.util.Set;
 
 public interface WonderlandProfileFinder {
     Set<String> discoverSpringProfilesIn(Collection<String> prefixes);
+
+    default Set<String> discoverSpringProfilesIn(Collection<String> prefixes, DiscoveryListener listener) {
+        return discoverSpringProfilesIn(prefixes);
+    }
 }
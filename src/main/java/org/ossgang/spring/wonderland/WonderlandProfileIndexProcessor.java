@@ -0,0 +1,147 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Writes a {@link ProfileIndex} of all {@link org.springframework.context.annotation.Profile} values declared in the
+ * compiled sources, to be picked up at runtime by {@link IndexedProfileFinder}.
+ * <p>
+ * Incremental compilations (e.g. in the IDE) only see the recompiled sources, so the entries of an index already
+ * present in the class output are kept. Like Spring's candidate component index, the index may then list profiles of
+ * deleted sources until the next full build, but it never misses any.
+ * <p>
+ * The processor is not registered in the main jar, so that it does not run in every compilation having this library on
+ * the classpath. Its registration comes with the jar of classifier {@code processor}, to be added to the annotation
+ * processor path.
+ */
+public class WonderlandProfileIndexProcessor extends AbstractProcessor {
+
+    private static final String PROFILE_ANNOTATION = "org.springframework.context.annotation.Profile";
+
+    private final SortedSet<String> entries = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        /* claim nothing, but run for every compilation so that jars without profiles are indexed as well */
+        return Collections.singleton("*");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement profileAnnotation = processingEnv.getElementUtils().getTypeElement(PROFILE_ANNOTATION);
+        if (profileAnnotation != null) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(profileAnnotation)) {
+                String packageName = processingEnv.getElementUtils().getPackageOf(element).getQualifiedName()
+                        .toString();
+                profilesOf(element).forEach(profile -> entries.add(ProfileIndex.entry(packageName, profile)));
+            }
+        }
+        if (roundEnv.processingOver()) {
+            writeIndex();
+        }
+        return false;
+    }
+
+    private Set<String> profilesOf(Element element) {
+        Set<String> profiles = new TreeSet<>();
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!mirror.getAnnotationType().toString().equals(PROFILE_ANNOTATION)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : mirror.getElementValues()
+                    .entrySet()) {
+                if (value.getKey().getSimpleName().contentEquals("value")) {
+                    addValues(value.getValue().getValue(), profiles);
+                }
+            }
+        }
+        return profiles;
+    }
+
+    private static void addValues(Object value, Set<String> profiles) {
+        if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                addValues(((AnnotationValue) item).getValue(), profiles);
+            }
+        } else if (value instanceof String) {
+            profiles.add((String) value);
+        }
+    }
+
+    private void writeIndex() {
+        entries.addAll(existingEntries());
+        try {
+            FileObject index = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", ProfileIndex.LOCATION);
+            try (Writer writer = new OutputStreamWriter(index.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String entry : entries) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write wonderland profile index: " + e);
+        }
+    }
+
+    private Set<String> existingEntries() {
+        Set<String> existing = new TreeSet<>();
+        try {
+            FileObject index = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", ProfileIndex.LOCATION);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(index.openInputStream(), StandardCharsets.UTF_8))) {
+                reader.lines().map(String::trim).filter(line -> !line.isEmpty()).forEach(existing::add);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            /* no index from a previous compilation */
+        }
+        return existing;
+    }
+}
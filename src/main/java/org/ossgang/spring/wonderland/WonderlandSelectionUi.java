@@ -0,0 +1,48 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Asks for the Spring profiles to activate, offering the choices of a {@link SelectionModel}. An empty result means
+ * that the selection was cancelled.
+ * <p>
+ * Unless set explicitly on the {@link WonderlandContextSelector}, the implementation is chosen with the system
+ * property {@value #UI_PROPERTY}: {@code swing} ({@link SwingSelectionUi}), {@code console}
+ * ({@link ConsoleSelectionUi}) or {@code rules} ({@link RulesFileSelectionUi} reading the file given in
+ * {@value #RULES_PROPERTY}). Without it, a configured rules file is used, then the console on headless machines and
+ * Swing otherwise.
+ */
+@FunctionalInterface
+public interface WonderlandSelectionUi {
+
+    String UI_PROPERTY = "wonderland.selection.ui";
+    String RULES_PROPERTY = "wonderland.selection.rules";
+
+    Optional<List<String>> select(SelectionModel model);
+
+    /**
+     * Asks for the profiles while they are still being discovered. By default, waits for the discovery to complete.
+     */
+    default Optional<List<String>> select(ProgressiveSelection selection) {
+        return select(selection.awaitModel());
+    }
+}
@@ -18,68 +18,289 @@
 
 package org.ossgang.spring.wonderland;
 
-import org.springframework.beans.factory.support.DefaultListableBeanFactory;
-import org.springframework.beans.factory.xml.BeanDefinitionDocumentReader;
-import org.springframework.beans.factory.xml.DefaultBeanDefinitionDocumentReader;
-import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
-import org.w3c.dom.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ResourceUtils;
+import org.springframework.util.StringUtils;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
-public class XmlProfileFinder implements WonderlandProfileFinder {
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static org.ossgang.spring.wonderland.DiscoveryTiming.timed;
+
+/**
+ * Discovers the {@code profile} attributes of the (nested) {@code <beans>} elements in Spring XML files, following
+ * their {@code <import>}s. The files are streamed with StAX: no DOM is built, nothing is validated and no bean
+ * definition is created.
+ */
+public class XmlProfileFinder implements ClassPathEntryProfileFinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(XmlProfileFinder.class);
+
+    private static final String CLASSPATH_ALL_URL_PREFIX = ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX;
+    private static final String BEANS_NAMESPACE = "http://www.springframework.org/schema/beans";
+    private static final String BEANS_ELEMENT = "beans";
+    private static final String IMPORT_ELEMENT = "import";
+    private static final String PROFILE_ATTRIBUTE = "profile";
+    private static final String RESOURCE_ATTRIBUTE = "resource";
+    private static final String PLACEHOLDER_PREFIX = "${";
+
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORY = ThreadLocal
+            .withInitial(XmlProfileFinder::createXmlInputFactory);
+
+    private final ClassLoader classLoader;
+
+    /**
+     * A finder resolving the XML files with the thread context class loader, like Spring does by default.
+     */
+    public XmlProfileFinder() {
+        this(ClassUtils.getDefaultClassLoader());
+    }
+
+    public XmlProfileFinder(ClassLoader classLoader) {
+        this.classLoader = requireNonNull(classLoader, "classLoader must not be null");
+    }
 
     @Override
     public Set<String> discoverSpringProfilesIn(Collection<String> scanLocations) {
-        Set<String> discoveredProfiles = new HashSet<>();
+        return discoverSpringProfilesIn(scanLocations, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(Collection<String> scanLocations, DiscoveryListener listener) {
+        String finder = getClass().getSimpleName();
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        Set<String> discoveredProfiles = ConcurrentHashMap.newKeySet();
         for (String selectorUrl : scanLocations) {
-            if (!selectorUrl.startsWith("classpath*:")) {
+            if (!selectorUrl.startsWith(CLASSPATH_ALL_URL_PREFIX)) {
                 continue;
             }
-            ProfileListExtractingDocumentReader documentReader = new ProfileListExtractingDocumentReader();
-            CustomXmlBeamDefinitionReader reader = new CustomXmlBeamDefinitionReader(documentReader);
-            reader.loadBeanDefinitions(selectorUrl);
-            discoveredProfiles.addAll(documentReader.getProfiles());
+            Resource[] resources = timed(listener, finder, DiscoveryPhase.RESOLVE,
+                    () -> resolve(resolver, selectorUrl));
+            Stream.of(resources).parallel()
+                    .forEach(resource -> discoveredProfiles.addAll(profilesIn(resource, resolver, finder, listener)));
         }
         return discoveredProfiles;
     }
 
-    private static class ProfileListExtractingDocumentReader extends DefaultBeanDefinitionDocumentReader {
-        private Set<String> profiles = new HashSet<>();
+    @Override
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
 
-        @Override
-        protected void doRegisterBeanDefinitions(Element element) {
-            String profile = element.getAttribute(PROFILE_ATTRIBUTE);
-            if (!profile.isEmpty()) {
-                String[] newProfiles = profile.split("\\s*,\\s*");
-                synchronized (profiles) {
-                    profiles.addAll(Arrays.asList(newProfiles));
+    @Override
+    public Set<String> discoverSpringProfilesIn(ClassPathEntry entry, Collection<String> scanLocations) {
+        return discoverSpringProfilesIn(entry, scanLocations, DiscoveryListener.NONE);
+    }
+
+    @Override
+    public Set<String> discoverSpringProfilesIn(ClassPathEntry entry, Collection<String> scanLocations,
+                                                DiscoveryListener listener) {
+        String finder = getClass().getSimpleName();
+        List<String> patterns = scanLocations.stream()
+                .filter(selectorUrl -> selectorUrl.startsWith(CLASSPATH_ALL_URL_PREFIX))
+                .map(selectorUrl -> StringUtils.trimLeadingCharacter(
+                        selectorUrl.substring(CLASSPATH_ALL_URL_PREFIX.length()), '/'))
+                .collect(toList());
+        Set<String> discoveredProfiles = new HashSet<>();
+        if (patterns.isEmpty()) {
+            return discoveredProfiles;
+        }
+        Map<String, byte[]> files = timed(listener, finder, DiscoveryPhase.RESOLVE,
+                () -> readMatchingFiles(entry, patterns));
+        ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+        files.forEach((resourceName, content) -> discoveredProfiles
+                .addAll(profilesIn(new ReadResource(rootUrlOf(entry) + resourceName, content), resolver, finder,
+                        listener)));
+        return discoveredProfiles;
+    }
+
+    private static Map<String, byte[]> readMatchingFiles(ClassPathEntry entry, List<String> patterns) {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        try {
+            entry.forEachResource(
+                    directory -> directory.isEmpty() || patterns.stream()
+                            .anyMatch(pattern -> PATH_MATCHER.matchStart(pattern, directory + "/")),
+                    resourceName -> patterns.stream().anyMatch(pattern -> PATH_MATCHER.match(pattern, resourceName)),
+                    (resourceName, content) -> files.put(resourceName, content.read()));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to scan " + entry + " for XML files", e);
+        }
+        return files;
+    }
+
+    static Set<String> profilesIn(Resource resource, ResourcePatternResolver resolver, String finder,
+                                  DiscoveryListener listener) {
+        return timed(listener, finder, DiscoveryPhase.PARSE, () -> {
+            Set<String> profiles = new HashSet<>();
+            int parsed = parseWithImports(resource, resolver, (profile, source) -> {
+                profiles.add(profile);
+                listener.profileFound(finder, profile, source);
+            }, imported -> listener.fileImported(finder, urlOf(imported)));
+            listener.counted(finder, DiscoveryCounter.XML_FILES_PARSED, parsed);
+            return profiles;
+        });
+    }
+
+    private static int parseWithImports(Resource resource, ResourcePatternResolver resolver,
+                                        BiConsumer<String, ProfileSource> profiles, Consumer<Resource> imports) {
+        Set<String> visited = new HashSet<>();
+        Deque<Resource> pending = new ArrayDeque<>();
+        pending.add(resource);
+        visited.add(resource.getDescription());
+        while (!pending.isEmpty()) {
+            Resource current = pending.poll();
+            ProfileSource source = ProfileSource.ofXmlFile(urlOf(current));
+            for (Resource imported : parse(current, profile -> profiles.accept(profile, source), resolver,
+                    current != resource)) {
+                if (visited.add(imported.getDescription())) {
+                    imports.accept(imported);
+                    pending.add(imported);
                 }
             }
-            super.doRegisterBeanDefinitions(element);
         }
+        return visited.size();
+    }
 
-        public Set<String> getProfiles() {
-            return profiles;
+    private static Set<Resource> parse(Resource resource, Consumer<String> profiles, ResourcePatternResolver resolver,
+                                       boolean isImport) {
+        Set<Resource> imports = new HashSet<>();
+        try (InputStream stream = resource.getInputStream()) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.get().createXMLStreamReader(stream);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT || !isBeansNamespace(reader)) {
+                        continue;
+                    }
+                    if (BEANS_ELEMENT.equals(reader.getLocalName())) {
+                        String profile = reader.getAttributeValue(null, PROFILE_ATTRIBUTE);
+                        if (profile != null && !profile.trim().isEmpty()) {
+                            Arrays.asList(profile.trim().split("\\s*,\\s*")).forEach(profiles);
+                        }
+                    } else if (IMPORT_ELEMENT.equals(reader.getLocalName())) {
+                        String location = reader.getAttributeValue(null, RESOURCE_ATTRIBUTE);
+                        imports.addAll(resolveImport(resource, location, resolver));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException | XMLStreamException e) {
+            if (isImport) {
+                LOGGER.warn("Unable to read imported XML file " + resource.getDescription() + ", skipping it", e);
+                return imports;
+            }
+            throw new RuntimeException("Unable to read XML file " + resource.getDescription(), e);
         }
+        return imports;
+    }
 
+    private static Set<Resource> resolveImport(Resource resource, String location, ResourcePatternResolver resolver)
+            throws IOException {
+        Set<Resource> imports = new HashSet<>();
+        if (location == null || location.trim().isEmpty() || location.contains(PLACEHOLDER_PREFIX)) {
+            LOGGER.debug("Not following import '" + location + "' of " + resource.getDescription());
+            return imports;
+        }
+        String trimmedLocation = location.trim();
+        if (ResourcePatternUtils.isUrl(trimmedLocation)) {
+            imports.addAll(Arrays.asList(resolver.getResources(trimmedLocation)));
+        } else {
+            imports.add(resource.createRelative(trimmedLocation));
+        }
+        imports.removeIf(imported -> !imported.exists());
+        return imports;
     }
 
-    private static class CustomXmlBeamDefinitionReader extends XmlBeanDefinitionReader {
+    private static String urlOf(Resource resource) {
+        try {
+            return resource.getURL().toString();
+        } catch (IOException e) {
+            return resource.getDescription();
+        }
+    }
+
+    private static boolean isBeansNamespace(XMLStreamReader reader) {
+        String namespace = reader.getNamespaceURI();
+        return namespace == null || namespace.isEmpty() || BEANS_NAMESPACE.equals(namespace);
+    }
 
-        private final DefaultBeanDefinitionDocumentReader documentReader;
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    private static String rootUrlOf(ClassPathEntry entry) {
+        String fileUrl = entry.getFile().toURI().toString();
+        return entry.isJar() ? ResourceUtils.JAR_URL_PREFIX + fileUrl + ResourceUtils.JAR_URL_SEPARATOR : fileUrl;
+    }
 
-        public CustomXmlBeamDefinitionReader(DefaultBeanDefinitionDocumentReader documentReader) {
-            super(new DefaultListableBeanFactory());
-            this.documentReader = documentReader;
+    /**
+     * A file of a classpath entry whose content has already been read. Imports are resolved relative to its URL.
+     */
+    private static final class ReadResource extends UrlResource {
+        private final byte[] content;
+
+        private ReadResource(String url, byte[] content) {
+            super(toUrl(url));
+            this.content = content;
         }
 
         @Override
-        protected BeanDefinitionDocumentReader createBeanDefinitionDocumentReader() {
-            return documentReader;
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        private static URL toUrl(String url) {
+            try {
+                return new URL(url);
+            } catch (MalformedURLException e) {
+                throw new RuntimeException(e);
+            }
         }
+    }
 
+    private static Resource[] resolve(ResourcePatternResolver resolver, String selectorUrl) {
+        try {
+            return resolver.getResources(selectorUrl);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachingProfileFinderTest {
+
+    private static final Set<String> PREFIXES = Collections.singleton("any");
+    private static final String BEANS_NAMESPACE = "http://www.springframework.org/schema/beans";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File first;
+    private File second;
+    private Path cacheDirectory;
+    private URLClassLoader classLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        first = temporaryFolder.newFolder("first");
+        second = temporaryFolder.newFolder("second");
+        cacheDirectory = temporaryFolder.newFolder("cache").toPath();
+        write(first, "content");
+        write(second, "content");
+        classLoader = new URLClassLoader(new URL[] { first.toURI().toURL(), second.toURI().toURL() }, null);
+    }
+
+    @Test
+    public void reusesCachedProfilesOfUnchangedEntries() {
+        EntryRecordingFinder finder = new EntryRecordingFinder();
+        Set<String> initial = new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(PREFIXES);
+        finder.scannedEntries.clear();
+
+        Set<String> cached = new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(PREFIXES);
+
+        assertThat(cached).isEqualTo(initial).containsOnly("first.profile", "second.profile");
+        assertThat(finder.scannedEntries).isEmpty();
+    }
+
+    @Test
+    public void reportsTheCachedSourcesOfProfilesAgain() {
+        EntryRecordingFinder finder = new EntryRecordingFinder();
+        new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(PREFIXES);
+        finder.scannedEntries.clear();
+
+        ProfileSourceIndex sources = new ProfileSourceIndex();
+        new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(PREFIXES, sources);
+
+        assertThat(finder.scannedEntries).isEmpty();
+        assertThat(sources.sourcesOf("first.profile")).containsExactly(ProfileSource.ofClass("first.Configuration"));
+    }
+
+    @Test
+    public void rescansOnlyChangedEntries() throws Exception {
+        EntryRecordingFinder finder = new EntryRecordingFinder();
+        new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(PREFIXES);
+        finder.scannedEntries.clear();
+
+        write(second, "changed content");
+        new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(PREFIXES);
+
+        assertThat(finder.scannedEntries).containsExactly(second.getCanonicalFile());
+    }
+
+    @Test
+    public void cachesOtherFindersForTheWholeClassPath() {
+        AtomicInteger invocations = new AtomicInteger();
+        WonderlandProfileFinder finder = prefixes -> {
+            invocations.incrementAndGet();
+            return Collections.singleton("some.profile");
+        };
+
+        new CachingProfileFinder(finder, cacheDirectory, classLoader).discoverSpringProfilesIn(PREFIXES);
+        Set<String> cached = new CachingProfileFinder(finder, cacheDirectory, classLoader)
+                .discoverSpringProfilesIn(PREFIXES);
+
+        assertThat(cached).containsOnly("some.profile");
+        assertThat(invocations).hasValue(1);
+    }
+
+    @Test
+    public void keepsTheCachesOfDifferentClassPathsApart() throws Exception {
+        EntryRecordingFinder finder = new EntryRecordingFinder();
+        EntryRecordingFinder otherFinder = new EntryRecordingFinder();
+        otherFinder.classLoader = new URLClassLoader(new URL[] { first.toURI().toURL() }, null);
+        new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(PREFIXES);
+        new CachingProfileFinder(otherFinder, cacheDirectory).discoverSpringProfilesIn(PREFIXES);
+        finder.scannedEntries.clear();
+
+        new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(PREFIXES);
+
+        assertThat(finder.scannedEntries).isEmpty();
+    }
+
+    @Test
+    public void rescansXmlFilesWhoseImportsInOtherEntriesChanged() throws Exception {
+        Files.createDirectories(first.toPath().resolve("config"));
+        Files.write(first.toPath().resolve("config/wonderland-main.xml"), ("<beans xmlns=\"" + BEANS_NAMESPACE
+                + "\"><import resource=\"classpath*:library/imported.xml\"/></beans>")
+                .getBytes(StandardCharsets.UTF_8));
+        Path imported = second.toPath().resolve("library/imported.xml");
+        Files.createDirectories(imported.getParent());
+        Files.write(imported, ("<beans xmlns=\"" + BEANS_NAMESPACE + "\"><beans profile=\"imported.pro\"/></beans>")
+                .getBytes(StandardCharsets.UTF_8));
+        Set<String> locations = Collections.singleton("classpath*:config/wonderland-*.xml");
+        XmlProfileFinder finder = new XmlProfileFinder(classLoader);
+        assertThat(new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(locations))
+                .containsOnly("imported.pro");
+
+        Files.write(imported, ("<beans xmlns=\"" + BEANS_NAMESPACE + "\"><beans profile=\"imported.changed\"/></beans>")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertThat(new CachingProfileFinder(finder, cacheDirectory).discoverSpringProfilesIn(locations))
+                .containsOnly("imported.changed");
+    }
+
+    private static void write(File directory, String content) throws Exception {
+        Files.write(directory.toPath().resolve("resource.txt"), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private class EntryRecordingFinder implements ClassPathEntryProfileFinder {
+        private final List<File> scannedEntries = new CopyOnWriteArrayList<>();
+        private ClassLoader classLoader = CachingProfileFinderTest.this.classLoader;
+
+        @Override
+        public ClassLoader getClassLoader() {
+            return classLoader;
+        }
+
+        @Override
+        public Set<String> discoverSpringProfilesIn(ClassPathEntry entry, Collection<String> prefixes) {
+            return discoverSpringProfilesIn(entry, prefixes, DiscoveryListener.NONE);
+        }
+
+        @Override
+        public Set<String> discoverSpringProfilesIn(ClassPathEntry entry, Collection<String> prefixes,
+                                                    DiscoveryListener listener) {
+            scannedEntries.add(entry.getFile());
+            String name = entry.getFile().getName();
+            listener.profileFound("finder", name + ".profile", ProfileSource.ofClass(name + ".Configuration"));
+            return Collections.singleton(name + ".profile");
+        }
+
+        @Override
+        public Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+            throw new UnsupportedOperationException("only scanned per entry");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClassDataSharingTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void trainsWithoutShowingTheDialog() {
+        WonderlandContextSelector selector = WonderlandContextSelector.create(Arrays.asList(
+                "org.ossgang.spring.wonderland.initializer",
+                "classpath*:org/ossgang/spring/wonderland/initializer/*-beans.xml"),
+                Arrays.asList(new ClassFileProfileFinder(), new XmlProfileFinder()))
+                .withSelectionUi(model -> {
+                    throw new AssertionError("no selection expected");
+                });
+
+        ClassDataSharing.train(selector);
+
+        assertThat(selector.getProfileRegistry().getProfileNames()).contains("initializer.pro", "initializer.xml");
+    }
+
+    @Test
+    public void launchesFromTheArchiveOnceTrained() throws IOException {
+        Path archive = folder.getRoot().toPath().resolve("app.jsa");
+        assertThat(ClassDataSharing.trainingOptions(archive)).containsExactly("-XX:ArchiveClassesAtExit=" + archive);
+        assertThat(ClassDataSharing.launchOptions(archive)).isEmpty();
+
+        Files.createFile(archive);
+
+        assertThat(ClassDataSharing.launchOptions(archive)).contains("-XX:SharedArchiveFile=" + archive);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ossgang.spring.wonderland.fixtures.ProfiledConfiguration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClassFileProfileFinderTest {
+
+    private static final String FIXTURE_PACKAGE = "org.ossgang.spring.wonderland.fixtures";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void discoversProfilesOfClassesAndMethods() {
+        Set<String> profiles = new ClassFileProfileFinder()
+                .discoverSpringProfilesIn(Collections.singleton(FIXTURE_PACKAGE));
+
+        assertThat(profiles).contains("fixture.pro", "fixture.demo", "!fixture.other");
+    }
+
+    @Test
+    public void ignoresClassesOutsideOfPrefixes() {
+        Set<String> profiles = new ClassFileProfileFinder()
+                .discoverSpringProfilesIn(Collections.singleton("org.ossgang.nonexisting"));
+
+        assertThat(profiles).isEmpty();
+    }
+
+    @Test
+    public void skipsTruncatedClassFiles() throws IOException {
+        byte[] classFile;
+        try (InputStream in = ProfiledConfiguration.class.getResourceAsStream("ProfiledConfiguration.class")) {
+            classFile = ByteStreams.toByteArray(in);
+        }
+        Path fixtures = folder.getRoot().toPath().resolve(FIXTURE_PACKAGE.replace('.', '/'));
+        Files.createDirectories(fixtures);
+        Files.write(fixtures.resolve("ProfiledConfiguration.class"), classFile);
+        for (int length : new int[] { 4, 10, 30, classFile.length / 2 }) {
+            Files.write(fixtures.resolve("Truncated" + length + ".class"), Arrays.copyOf(classFile, length));
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { folder.getRoot().toURI().toURL() }, null)) {
+            Set<String> profiles = new ClassFileProfileFinder(classLoader)
+                    .discoverSpringProfilesIn(Collections.singleton(FIXTURE_PACKAGE));
+
+            assertThat(profiles).contains("fixture.pro", "fixture.demo", "!fixture.other");
+        }
+    }
+
+    @Test
+    public void doesNotInitializeScannedClasses() {
+        new ClassFileProfileFinder().discoverSpringProfilesIn(Collections.singleton(FIXTURE_PACKAGE));
+
+        assertThat(System.getProperty(ProfiledConfiguration.INITIALIZED_PROPERTY)).isNull();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompositeProfileFinderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    public void keepsPartialResultsAndReportsFinderMissingItsDeadline() {
+        WonderlandProfileFinder fast = new FixedProfileFinder("db.pro");
+        WonderlandProfileFinder slow = new BlockingProfileFinder();
+        DiscoveryStatistics statistics = new DiscoveryStatistics();
+
+        Set<String> profiles = new CompositeProfileFinder(Arrays.asList(fast, slow))
+                .withDeadline(slow, Duration.ofMillis(50))
+                .discoverSpringProfilesIn(Collections.singleton("any"), statistics);
+        release.countDown();
+
+        assertThat(profiles).containsExactly("db.pro");
+        assertThat(statistics.report().getTimedOutFinders()).containsOnlyKeys("BlockingProfileFinder");
+    }
+
+    @Test
+    public void stopsWaitingOnceAuthoritativeFinderAnswered() {
+        WonderlandProfileFinder index = new FixedProfileFinder("db.pro", "gui.dev");
+        WonderlandProfileFinder scan = new BlockingProfileFinder();
+
+        Set<String> profiles = new CompositeProfileFinder(Arrays.asList(index, scan, index))
+                .withAuthoritative(index)
+                .discoverSpringProfilesIn(Collections.singleton("any"));
+        release.countDown();
+
+        assertThat(profiles).containsOnly("db.pro", "gui.dev");
+    }
+
+    @Test
+    public void settlesEachFinderInstanceOnce() {
+        WonderlandProfileFinder slow = new BlockingProfileFinder();
+        DiscoveryProgress progress = new DiscoveryProgress();
+
+        new CompositeProfileFinder(Arrays.asList(new FixedProfileFinder("db.pro"), new FixedProfileFinder("gui.pro"),
+                slow)).withDeadline(slow, Duration.ofMillis(50))
+                .discoverSpringProfilesIn(Collections.singleton("any"), progress);
+        release.countDown();
+
+        assertThat(progress.getStartedFinders()).isEqualTo(3);
+        assertThat(progress.getSettledFinders()).isEqualTo(3);
+    }
+
+    @Test
+    public void dropsEventsOfFindersStillRunningAfterCompletion() throws InterruptedException {
+        WonderlandProfileFinder index = new FixedProfileFinder("db.pro");
+        CountDownLatch reported = new CountDownLatch(1);
+        WonderlandProfileFinder scan = new WonderlandProfileFinder() {
+            @Override
+            public Set<String> discoverSpringProfilesIn(Collection<String> prefixes, DiscoveryListener listener) {
+                new BlockingProfileFinder().discoverSpringProfilesIn(prefixes);
+                listener.profileFound("scan", "slow.pro", ProfileSource.ofClass("org.acme.Slow"));
+                reported.countDown();
+                return ImmutableSet.of("slow.pro");
+            }
+
+            @Override
+            public Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+                return discoverSpringProfilesIn(prefixes, DiscoveryListener.NONE);
+            }
+        };
+        Set<String> foundProfiles = ConcurrentHashMap.newKeySet();
+        DiscoveryListener listener = new DiscoveryListener() {
+            @Override
+            public void profileFound(String finder, String profile, ProfileSource source) {
+                foundProfiles.add(profile);
+            }
+
+            @Override
+            public void finderCompleted(String finder, long durationNanos, Set<String> profiles) {
+                foundProfiles.addAll(profiles);
+            }
+        };
+
+        Set<String> profiles = new CompositeProfileFinder(Arrays.asList(index, scan))
+                .withAuthoritative(index)
+                .discoverSpringProfilesIn(Collections.singleton("any"), listener);
+        release.countDown();
+        assertThat(reported.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(profiles).containsOnly("db.pro");
+        assertThat(foundProfiles).containsOnly("db.pro");
+    }
+
+    private static class FixedProfileFinder implements WonderlandProfileFinder {
+        private final Set<String> profiles;
+
+        FixedProfileFinder(String... profiles) {
+            this.profiles = ImmutableSet.copyOf(profiles);
+        }
+
+        @Override
+        public Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+            return profiles;
+        }
+    }
+
+    private class BlockingProfileFinder implements WonderlandProfileFinder {
+        @Override
+        public Set<String> discoverSpringProfilesIn(Collection<String> prefixes) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ImmutableSet.of("slow.pro");
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConsoleSelectionUiTest {
+
+    private static final SelectionModel MODEL = SelectionModel.of(
+            ImmutableSet.of("db.pro", "db.demo", "gui.pro", "gui.demo", "standalone"),
+            ImmutableSet.of("db.pro", "gui.pro"), true);
+
+    @Test
+    public void selectsByNameNumberOrDefault() {
+        assertThat(select("demo\n\ny\n")).hasValueSatisfying(
+                selection -> assertThat(selection).containsExactly("db.demo", "gui.pro", "standalone"));
+        assertThat(select("staging\n1\n-\n\n")).hasValueSatisfying(
+                selection -> assertThat(selection).containsExactly("db.demo"));
+    }
+
+    @Test
+    public void cancelsAtEndOfInput() {
+        assertThat(select("pro\n")).isEmpty();
+    }
+
+    private static Optional<List<String>> select(String input) {
+        ByteArrayInputStream in = new ByteArrayInputStream(input.getBytes(Charset.defaultCharset()));
+        return new ConsoleSelectionUi(in, new PrintStream(new ByteArrayOutputStream())).select(MODEL);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiscoveryRegistryTest {
+
+    private static final List<String> LOCATIONS = Collections.singletonList("org.ossgang.spring.wonderland.fixtures");
+
+    private final DiscoveryRegistry<CompletableFuture<String>> registry = new DiscoveryRegistry<>(
+            discovery -> discovery);
+    private final AtomicInteger started = new AtomicInteger();
+
+    @Test
+    public void sharesDiscoveriesOfTheSameLocationsFindersAndClassLoader() {
+        CompletableFuture<String> running = discover(LOCATIONS, new ClassFileProfileFinder(), new XmlProfileFinder());
+        CompletableFuture<String> concurrent = discover(LOCATIONS, new ClassFileProfileFinder(),
+                new XmlProfileFinder());
+        running.complete("done");
+
+        assertThat(concurrent).isSameAs(running);
+        assertThat(discover(LOCATIONS, new ClassFileProfileFinder(), new XmlProfileFinder())).isSameAs(running);
+        assertThat(discover(LOCATIONS, new ClassFileProfileFinder())).isNotSameAs(running);
+        assertThat(discover(Collections.singletonList("other"), new ClassFileProfileFinder(),
+                new XmlProfileFinder())).isNotSameAs(running);
+        assertThat(started).hasValue(3);
+    }
+
+    @Test
+    public void startsAgainOnceTheDiscoverySettingsChanged() {
+        CompletableFuture<String> running = discover(LOCATIONS, new ClassFileProfileFinder());
+        System.setProperty(CompositeProfileFinder.TIMEOUT_PROPERTY, "1000");
+        try {
+            assertThat(discover(LOCATIONS, new ClassFileProfileFinder())).isNotSameAs(running);
+        } finally {
+            System.clearProperty(CompositeProfileFinder.TIMEOUT_PROPERTY);
+        }
+        assertThat(discover(LOCATIONS, new ClassFileProfileFinder())).isSameAs(running);
+        assertThat(started).hasValue(2);
+    }
+
+    @Test
+    public void startsAgainAfterFailureOrForFindersOfUnknownBehaviour() {
+        discover(LOCATIONS, new ClassFileProfileFinder()).completeExceptionally(new IllegalStateException());
+        discover(LOCATIONS, new ClassFileProfileFinder());
+        WonderlandProfileFinder custom = prefixes -> Collections.emptySet();
+        discover(LOCATIONS, custom);
+        discover(LOCATIONS, custom);
+
+        assertThat(started).hasValue(4);
+    }
+
+    @Test
+    public void releasesDiscoveriesWithTheirClassLoader() throws Exception {
+        URLClassLoader classLoader = new URLClassLoader(new URL[0], getClass().getClassLoader());
+        discover(LOCATIONS, new ClassFileProfileFinder(classLoader)).complete("done");
+        assertThat(registry.classLoaderCount()).isEqualTo(1);
+
+        classLoader.close();
+        classLoader = null;
+        for (int attempt = 0; attempt < 50 && registry.classLoaderCount() > 0; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+
+        assertThat(registry.classLoaderCount()).isZero();
+    }
+
+    private CompletableFuture<String> discover(List<String> locations, WonderlandProfileFinder... finders) {
+        return registry.discover(locations, Arrays.asList(finders), () -> {
+            started.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DiscoveryStatisticsTest {
+
+    private static final String FIXTURE_PACKAGE = "org.ossgang.spring.wonderland.fixtures";
+    private static final String XML_LOCATION = "classpath*:org/ossgang/spring/wonderland/xml/wonderland-*.xml";
+
+    @Test
+    public void reportsDurationsCountersAndProfilesPerFinder() {
+        DiscoveryStatistics statistics = new DiscoveryStatistics();
+        new CompositeProfileFinder(Arrays.asList(new ClassFileProfileFinder(), new XmlProfileFinder()))
+                .discoverSpringProfilesIn(Arrays.asList(FIXTURE_PACKAGE, XML_LOCATION), statistics);
+
+        DiscoveryReport report = statistics.report();
+
+        assertThat(report.getFinderDurations()).containsOnlyKeys("ClassFileProfileFinder", "XmlProfileFinder");
+        assertThat(report.getPhaseDurations().get("ClassFileProfileFinder"))
+                .containsKeys(DiscoveryPhase.ENUMERATE, DiscoveryPhase.SCAN);
+        assertThat(report.getPhaseDurations().get("XmlProfileFinder"))
+                .containsKeys(DiscoveryPhase.RESOLVE, DiscoveryPhase.PARSE);
+        assertThat(report.getCount(DiscoveryCounter.CLASSES_SCANNED)).isGreaterThanOrEqualTo(1);
+        assertThat(report.getCount(DiscoveryCounter.XML_FILES_PARSED)).isGreaterThanOrEqualTo(2);
+        assertThat(report.getProfilesByFinder().get("ClassFileProfileFinder")).contains("fixture.pro");
+        assertThat(report.getProfiles()).contains("fixture.pro", "xml.imported");
+        assertThat(report.summary()).contains("ClassFileProfileFinder", "classes scanned", "xml files parsed");
+    }
+}
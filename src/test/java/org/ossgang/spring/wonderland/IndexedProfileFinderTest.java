@@ -0,0 +1,111 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.context.annotation.Profile;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IndexedProfileFinderTest {
+
+    private static final String SOURCE = "package wonderland.indexed;\n" //
+            + "@org.springframework.context.annotation.Profile(\"indexed.pro\")\n" //
+            + "public class IndexedConfiguration {\n" //
+            + "    @org.springframework.context.annotation.Profile({\"indexed.demo\", \"indexed.test\"})\n" //
+            + "    public Object bean() { return null; }\n" //
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void processorWritesIndexOfDeclaredProfiles() throws Exception {
+        Path output = compileWithIndexProcessor();
+
+        List<String> index = Files.readAllLines(output.resolve(ProfileIndex.LOCATION), StandardCharsets.UTF_8);
+        assertThat(index).containsExactly("wonderland.indexed=indexed.demo", "wonderland.indexed=indexed.pro",
+                "wonderland.indexed=indexed.test");
+    }
+
+    @Test
+    public void finderReadsIndexInsteadOfScanning() throws Exception {
+        Path output = compileWithIndexProcessor();
+        Files.delete(output.resolve("wonderland/indexed/IndexedConfiguration.class"));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { output.toUri().toURL() },
+                getClass().getClassLoader())) {
+            assertThat(new IndexedProfileFinder(classLoader)
+                    .discoverSpringProfilesIn(Collections.singleton("wonderland.indexed")))
+                    .containsOnly("indexed.pro", "indexed.demo", "indexed.test");
+        }
+    }
+
+    @Test
+    public void incrementalCompilationKeepsEntriesOfUnchangedSources() throws Exception {
+        Path output = compileWithIndexProcessor();
+
+        compileWithIndexProcessor(output, "OtherConfiguration.java", "package wonderland.other;\n"
+                + "@org.springframework.context.annotation.Profile(\"other.pro\")\n"
+                + "public class OtherConfiguration {\n"
+                + "}\n");
+
+        List<String> index = Files.readAllLines(output.resolve(ProfileIndex.LOCATION), StandardCharsets.UTF_8);
+        assertThat(index).containsExactly("wonderland.indexed=indexed.demo", "wonderland.indexed=indexed.pro",
+                "wonderland.indexed=indexed.test", "wonderland.other=other.pro");
+    }
+
+    private Path compileWithIndexProcessor() throws Exception {
+        Path output = temporaryFolder.newFolder("classes").toPath();
+        compileWithIndexProcessor(output, "IndexedConfiguration.java", SOURCE);
+        return output;
+    }
+
+    private void compileWithIndexProcessor(Path output, String fileName, String content) throws Exception {
+        Path source = temporaryFolder.newFolder().toPath().resolve(fileName);
+        Files.write(source, content.getBytes(StandardCharsets.UTF_8));
+
+        String springContext = new File(Profile.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .getPath();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(source.toFile());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null,
+                    Arrays.asList("-classpath", springContext, "-d", output.toString()), null, units);
+            task.setProcessors(Collections.singletonList(new WonderlandProfileIndexProcessor()));
+            assertThat(task.call()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedJarFileTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsStoredAndDeflatedEntries() throws Exception {
+        File jar = writeJar();
+
+        Map<String, String> contents = new LinkedHashMap<>();
+        MappedJarFile.open(jar).get().forEach(directory -> true, name -> true,
+                (name, content) -> contents.put(name, new String(content.read(), StandardCharsets.UTF_8)));
+
+        assertThat(contents).containsExactly(entry("org/app/Stored.txt", "stored"),
+                entry("org/app/Deflated.txt", repeated("deflated")), entry("org/other/Other.txt", "other"),
+                entry("root.txt", "root"));
+    }
+
+    @Test
+    public void streamsEntriesAndFindsThemByName() throws Exception {
+        MappedJarFile jarFile = MappedJarFile.open(writeJar()).get();
+
+        assertThat(read(jarFile.find("org/app/Stored.txt").get())).isEqualTo("stored");
+        assertThat(read(jarFile.find("org/app/Deflated.txt").get())).isEqualTo(repeated("deflated"));
+        assertThat(jarFile.find("org/app/Missing.txt")).isEmpty();
+    }
+
+    @Test
+    public void skipsEntriesOfRejectedDirectories() throws Exception {
+        List<String> directories = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        MappedJarFile.open(writeJar()).get().forEach(directory -> {
+            directories.add(directory);
+            return directory.startsWith("org/app");
+        }, names::add, (name, content) -> {
+        });
+
+        assertThat(directories).containsExactly("org/app", "org/other", "");
+        assertThat(names).containsExactly("org/app/Stored.txt", "org/app/Deflated.txt");
+    }
+
+    @Test
+    public void doesNotMapFilesWhichAreNoZipArchives() throws Exception {
+        File file = temporaryFolder.newFile("plain.jar");
+        java.nio.file.Files.write(file.toPath(), repeated("no zip").getBytes(StandardCharsets.UTF_8));
+
+        assertThat(MappedJarFile.open(file)).isEqualTo(Optional.empty());
+    }
+
+    @Test
+    public void releasesTheMappingOnClose() throws Exception {
+        ClassPathEntry.ResourceContent content;
+        try (MappedJarFile jarFile = MappedJarFile.open(writeJar()).get()) {
+            content = jarFile.find("org/app/Stored.txt").get();
+        }
+
+        assertThatThrownBy(content::read).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void reportsJarsTruncatedWhileMappedAsUnreadable() throws Exception {
+        File jar = writeJar();
+        try (MappedJarFile jarFile = MappedJarFile.open(jar).get()) {
+            try (FileChannel channel = FileChannel.open(jar.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(0);
+            }
+
+            assertThatThrownBy(() -> jarFile.forEach(directory -> true, name -> true,
+                    (name, content) -> content.read())).isInstanceOf(IOException.class);
+        }
+    }
+
+    private File writeJar() throws Exception {
+        File jar = temporaryFolder.newFile("entries.jar");
+        try (ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(jar))) {
+            stream.putNextEntry(new ZipEntry("org/"));
+            stream.putNextEntry(new ZipEntry("org/app/"));
+            stream.putNextEntry(storedEntry("org/app/Stored.txt", "stored"));
+            stream.write("stored".getBytes(StandardCharsets.UTF_8));
+            stream.putNextEntry(new ZipEntry("org/app/Deflated.txt"));
+            stream.write(repeated("deflated").getBytes(StandardCharsets.UTF_8));
+            stream.putNextEntry(new ZipEntry("org/other/Other.txt"));
+            stream.write("other".getBytes(StandardCharsets.UTF_8));
+            stream.putNextEntry(new ZipEntry("root.txt"));
+            stream.write("root".getBytes(StandardCharsets.UTF_8));
+        }
+        return jar;
+    }
+
+    private static ZipEntry storedEntry(String name, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(bytes.length);
+        entry.setCrc(crc.getValue());
+        return entry;
+    }
+
+    private static String read(ClassPathEntry.ResourceContent content) throws Exception {
+        try (InputStream stream = content.open()) {
+            return new String(ByteStreams.toByteArray(stream), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String repeated(String text) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append(text).append(i);
+        }
+        return builder.toString();
+    }
+
+    private static Map.Entry<String, String> entry(String key, String value) {
+        return new java.util.AbstractMap.SimpleImmutableEntry<>(key, value);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrefixTrieTest {
+
+    private final PrefixTrie trie = PrefixTrie.ofPackagePaths(Arrays.asList("mpe", "cern.accsoft"));
+
+    @Test
+    public void matchesNamesStartingWithAnyPrefix() {
+        assertThat(trie.matchesPrefixOf("mpe")).isTrue();
+        assertThat(trie.matchesPrefixOf("mpe/app")).isTrue();
+        assertThat(trie.matchesPrefixOf("mpex/app")).isTrue();
+        assertThat(trie.matchesPrefixOf("cern/accsoft/gui")).isTrue();
+        assertThat(trie.matchesPrefixOf("cern/other")).isFalse();
+        assertThat(trie.matchesPrefixOf("cern")).isFalse();
+        assertThat(trie.matchesPrefixOf("mp")).isFalse();
+    }
+
+    @Test
+    public void descendsOnlyIntoDirectoriesThatMayContainMatches() {
+        assertThat(trie.mayContainMatchesBelow("")).isTrue();
+        assertThat(trie.mayContainMatchesBelow("cern")).isTrue();
+        assertThat(trie.mayContainMatchesBelow("cern/accsoft")).isTrue();
+        assertThat(trie.mayContainMatchesBelow("cern/accsoft/gui")).isTrue();
+        assertThat(trie.mayContainMatchesBelow("mpe/app")).isTrue();
+        assertThat(trie.mayContainMatchesBelow("cern/other")).isFalse();
+        assertThat(trie.mayContainMatchesBelow("org")).isFalse();
+        assertThat(trie.mayContainMatchesBelow("META-INF")).isFalse();
+    }
+
+    @Test
+    public void emptyPrefixMatchesEverything() {
+        PrefixTrie everything = PrefixTrie.of(Collections.singleton(""));
+
+        assertThat(everything.matchesPrefixOf("any/package")).isTrue();
+        assertThat(everything.mayContainMatchesBelow("any")).isTrue();
+    }
+}
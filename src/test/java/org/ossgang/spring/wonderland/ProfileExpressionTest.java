@@ -0,0 +1,69 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProfileExpressionTest {
+
+    private final ProfileRegistry profiles = ProfileRegistry
+            .of(Arrays.asList("db.pro", "db.demo", "gui.pro", "gui.web", "tracing"));
+
+    @Test
+    public void referencesAllProfilesOfTheExpression() {
+        assertThat(ProfileExpression.parse(" !db.pro ").getProfileNames()).containsExactly("db.pro");
+        assertThat(ProfileExpression.parse("db.pro & (gui.pro | !tracing)").getProfileNames())
+                .containsExactly("db.pro", "gui.pro", "tracing");
+    }
+
+    @Test
+    public void rejectsMalformedExpressions() {
+        for (String malformed : Arrays.asList("", "!", "db.pro &", "db.pro & gui.pro | tracing", "(db.pro",
+                "db.pro)", "db.pro gui.pro")) {
+            assertThatThrownBy(() -> ProfileExpression.parse(malformed)).as(malformed)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    public void compiledExpressionMatchesLikeTheParsedOne() {
+        for (String expression : Arrays.asList("db.pro", "!db.pro", "db.pro & gui.pro", "db.pro | gui.web | tracing",
+                "db.pro & (gui.pro | !tracing)", "!(db.demo | gui.web) & unknown.profile",
+                "unknown.profile | tracing")) {
+            ProfileExpression parsed = ProfileExpression.parse(expression);
+            Predicate<BitSet> compiled = parsed.compile(profiles);
+            for (ImmutableSet<String> active : Arrays.asList(ImmutableSet.<String>of(), ImmutableSet.of("db.pro"),
+                    ImmutableSet.of("db.pro", "gui.pro"), ImmutableSet.of("db.demo", "tracing"),
+                    ImmutableSet.of("db.pro", "gui.web", "tracing"))) {
+                assertThat(compiled.test(profiles.bitsOf(active))).as(expression + " for " + active)
+                        .isEqualTo(parsed.matches(active));
+            }
+        }
+        assertThat(ProfileExpression.parse("db.pro & (gui.pro | !tracing)").matches(ImmutableSet.of("db.pro")))
+                .isTrue();
+    }
+}
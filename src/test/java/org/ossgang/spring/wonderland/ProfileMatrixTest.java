@@ -0,0 +1,68 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProfileMatrixTest {
+
+    private final ProfileMatrix matrix = ProfileMatrix.of(SelectionModel.of(Arrays.asList("a.1", "a.2", "a.3",
+            "b.1", "b.2", "b.3", "c.1", "c.2", "c.3", "d.1", "d.2", "d.3", "tracing", "metrics"),
+            Arrays.asList("tracing"), true));
+
+    @Test
+    public void enumeratesTheCartesianProductWithDefaultUncategorizedProfiles() {
+        List<List<String>> all = matrix.all();
+
+        assertThat(matrix.size()).isEqualTo(81);
+        assertThat(all).hasSize(81).doesNotHaveDuplicates();
+        assertThat(all.get(0)).containsExactly("a.1", "b.1", "c.1", "d.1", "tracing");
+    }
+
+    @Test
+    public void coversEveryPairOfVariantsWithFewerCombinations() {
+        List<List<String>> pairwise = matrix.pairwise();
+
+        assertThat(pairwise.size()).isLessThan(20);
+        Set<List<String>> pairs = new HashSet<>();
+        for (List<String> combination : pairwise) {
+            for (int first = 0; first < 4; first++) {
+                for (int second = first + 1; second < 4; second++) {
+                    pairs.add(Arrays.asList(combination.get(first), combination.get(second)));
+                }
+            }
+        }
+        assertThat(pairs).hasSize(6 * 9);
+    }
+
+    @Test
+    public void samplesDistinctCombinationsReproducibly() {
+        List<List<String>> sample = matrix.sample(10, 42);
+
+        assertThat(sample).hasSize(10).doesNotHaveDuplicates().isEqualTo(matrix.sample(10, 42));
+        assertThat(matrix.sample(100, 42)).hasSize(81);
+    }
+}
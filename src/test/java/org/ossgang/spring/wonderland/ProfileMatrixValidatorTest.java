@@ -0,0 +1,84 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ProfileMatrixValidatorTest {
+
+    private final WonderlandContextSelector selector = WonderlandContextSelector.create(
+            Collections.singleton("org.ossgang.spring.wonderland.matrix"),
+            Collections.singleton(new ClassFileProfileFinder()));
+
+    @Test
+    public void refreshesAContextPerCombinationAndReportsFailures() {
+        ProfileMatrixReport report = ProfileMatrixValidator.of(selector).withParallelism(2).validate();
+
+        assertThat(report.getMatrixSize()).isEqualTo(6);
+        assertThat(report.getResults()).hasSize(6);
+        assertThat(report.getFailures()).hasSize(1).allSatisfy(failure -> assertThat(failure.getProfiles())
+                .containsExactly("matrix.broken", "store.file"));
+        assertThat(report.summary()).contains("6 of 6", "1 failed", "broken with a file store");
+        assertThatThrownBy(report::assertAllSucceeded).isInstanceOf(AssertionError.class)
+                .hasMessageContaining("FAILED [matrix.broken, store.file]");
+    }
+
+    @Test
+    public void validatesReducedMatrices() {
+        ProfileMatrixReport report = ProfileMatrixValidator.of(selector).sampled(2, 7).validate();
+
+        assertThat(report.getResults()).hasSize(2);
+        assertThat(report.getResults()).allSatisfy(result -> assertThat(result.getProfiles()).hasSize(2));
+        assertThat(ProfileMatrixValidator.of(selector).pairwise().validate().getResults())
+                .extracting(result -> result.getProfiles().get(0))
+                .contains("matrix.broken", "matrix.demo", "matrix.pro");
+    }
+
+    @Test
+    public void validatesTheEmptyCombinationWithoutAskingForASelection() {
+        WonderlandContextSelector emptySelector = WonderlandContextSelector
+                .create(Collections.singleton("any"), Collections.singleton(prefixes -> Collections.emptySet()))
+                .withSelectionUi(model -> {
+                    throw new AssertionError("no selection expected");
+                });
+
+        ProfileMatrixReport report = ProfileMatrixValidator.of(emptySelector).withTimeout(Duration.ofSeconds(10))
+                .validate();
+
+        assertThat(report.getResults()).hasSize(1).allSatisfy(result -> assertThat(result.getProfiles()).isEmpty());
+        assertThat(report.getFailures()).isEmpty();
+    }
+
+    @Test
+    public void rejectsNonPositiveParallelismProperty() {
+        System.setProperty(ProfileMatrixValidator.PARALLELISM_PROPERTY, "0");
+        try {
+            assertThatThrownBy(() -> ProfileMatrixValidator.of(selector)).isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining(ProfileMatrixValidator.PARALLELISM_PROPERTY);
+        } finally {
+            System.clearProperty(ProfileMatrixValidator.PARALLELISM_PROPERTY);
+        }
+    }
+}
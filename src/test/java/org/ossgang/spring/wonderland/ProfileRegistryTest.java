@@ -0,0 +1,59 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProfileRegistryTest {
+
+    private final ProfileRegistry registry = ProfileRegistry
+            .of(Arrays.asList("db.pro", "db.demo", "gui.server.production", "gui.local", "metrics", "pro"));
+
+    @Test
+    public void groupsSortedVariantsByCategory() {
+        assertThat(registry.getVariantsByCategory()).containsOnlyKeys("db", "gui");
+        assertThat(registry.getVariants("db")).containsExactly("demo", "pro");
+        assertThat(registry.getVariants("gui")).containsExactly("local", "server.production");
+        assertThat(registry.getVariants("other")).isEmpty();
+        assertThat(registry.getUncategorized()).containsExactly("metrics", "pro");
+    }
+
+    @Test
+    public void selectsProfilesWithAnyDotSeparatedPartStartingWithPrefix() {
+        assertThat(registry.profilesWithPrefix("pro")).extracting(WonderlandProfile::getName)
+                .containsExactly("db.pro", "gui.server.production");
+        assertThat(registry.profilesWithPrefix("server")).extracting(WonderlandProfile::getName)
+                .containsExactly("gui.server.production");
+        assertThat(registry.profilesWithPrefix("db")).isEmpty();
+    }
+
+    @Test
+    public void splitsProfilesIntoInternedTokens() {
+        WonderlandProfile profile = WonderlandProfile.of(new String("db.pro"));
+
+        assertThat(profile.getCategory()).contains("db");
+        assertThat(profile.getVariant()).contains("pro");
+        assertThat(profile.getCategory().get()).isSameAs(WonderlandProfile.of("db.demo").getCategory().get());
+        assertThat(WonderlandProfile.of("metrics").isCategorized()).isFalse();
+    }
+}
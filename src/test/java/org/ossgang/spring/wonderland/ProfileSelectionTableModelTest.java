@@ -0,0 +1,68 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProfileSelectionTableModelTest {
+
+    private final ProfileSelectionTableModel model = new ProfileSelectionTableModel(SelectionModel.of(
+            ImmutableSet.of("db.pro", "db.demo", "gui.pro", "gui.demo", "standalone"),
+            ImmutableSet.of("db.pro"), true));
+
+    @Test
+    public void startsWithDefaultSelection() {
+        assertThat(model.getRowCount()).isEqualTo(3);
+        assertThat(model.getSelection()).containsExactly("db.pro");
+    }
+
+    @Test
+    public void editsActivationAndVariants() {
+        model.setValueAt(true, 1, ProfileSelectionTableModel.ACTIVE_COLUMN);
+        model.setValueAt("pro", 1, ProfileSelectionTableModel.VARIANT_COLUMN);
+        model.setValueAt("unknown", 0, ProfileSelectionTableModel.VARIANT_COLUMN);
+        model.setValueAt(true, 2, ProfileSelectionTableModel.ACTIVE_COLUMN);
+
+        assertThat(model.getSelection()).containsExactly("db.pro", "gui.pro", "standalone");
+    }
+
+    @Test
+    public void keepsEditsWhenUpdatedWithMoreProfiles() {
+        model.setValueAt("demo", 0, ProfileSelectionTableModel.VARIANT_COLUMN);
+        model.setValueAt(true, 2, ProfileSelectionTableModel.ACTIVE_COLUMN);
+
+        model.update(SelectionModel.of(ImmutableSet.of("db.pro", "db.demo", "gui.pro", "gui.demo", "net.pro",
+                "standalone"), ImmutableSet.of("db.pro", "net.pro"), true));
+
+        assertThat(model.getRowCount()).isEqualTo(4);
+        assertThat(model.getSelection()).containsExactly("db.demo", "net.pro", "standalone");
+    }
+
+    @Test
+    public void filtersByCategoryVariantAndProfileName() {
+        assertThat(model.matches(0, "DB")).isTrue();
+        assertThat(model.matches(0, "b.dem")).isTrue();
+        assertThat(model.matches(1, "db")).isFalse();
+        assertThat(model.matches(2, "stand")).isTrue();
+        assertThat(model.matches(2, " ")).isTrue();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+import org.ossgang.spring.wonderland.fixtures.ProfiledConfiguration;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProfileSourceIndexTest {
+
+    private static final String FIXTURES = "org.ossgang.spring.wonderland.fixtures";
+    private static final String XML_LOCATION = "classpath*:org/ossgang/spring/wonderland/xml/wonderland-*.xml";
+
+    private final ProfileSourceIndex index = new ProfileSourceIndex();
+
+    @Test
+    public void indexesDeclaringClassesAndMethodsDuringTheScan() {
+        new ClassFileProfileFinder().discoverSpringProfilesIn(Collections.singleton(FIXTURES), index);
+
+        String className = ProfiledConfiguration.class.getName();
+        assertThat(index.sourcesOf("fixture.pro")).containsExactly(ProfileSource.ofClass(className));
+        assertThat(index.sourcesOf("fixture.demo")).containsExactly(ProfileSource.ofMethod(className, "demoBean"));
+        assertThat(index.sourcesOf("fixture.other")).containsExactly(ProfileSource.ofMethod(className, "demoBean"));
+        assertThat(index.namingViolations()).isEmpty();
+    }
+
+    @Test
+    public void indexesDeclaringXmlFiles() {
+        new XmlProfileFinder().discoverSpringProfilesIn(Collections.singleton(XML_LOCATION), index);
+
+        assertThat(index.sourcesOf("xml.imported")).hasSize(1).allSatisfy(source -> {
+            assertThat(source.getKind()).isEqualTo(ProfileSource.Kind.XML_FILE);
+            assertThat(source.getLocation()).endsWith("imported/imported-beans.xml");
+        });
+    }
+
+    @Test
+    public void reportsProfilesNotFollowingTheNamingScheme() {
+        ProfileSource source = ProfileSource.ofClass("a.Configuration");
+        index.profileFound("finder", "db.pro & gui.pro", source);
+        index.profileFound("finder", "db.pro & gui.pro | gui.demo", source);
+        index.profileFound("finder", "db..pro", source);
+        index.profileFound("finder", "metrics", source);
+
+        assertThat(index.namingViolations()).containsOnlyKeys("db.pro & gui.pro | gui.demo", "db..pro");
+        assertThat(index.sourcesOf("gui.pro")).containsExactly(source);
+    }
+
+    @Test
+    public void evaluatesProfileExpressionsOfTheSources() {
+        ProfileSource both = ProfileSource.ofClass("a.Both");
+        ProfileSource notDemo = ProfileSource.ofMethod("a.Configuration", "notDemo");
+        ProfileSource either = ProfileSource.ofXmlFile("file:/either.xml");
+        index.profileFound("finder", "db.pro & (gui.pro | gui.web)", both);
+        index.profileFound("finder", "!db.demo", notDemo);
+        index.profileFound("finder", "db.demo", either);
+        index.profileFound("finder", "gui.web", either);
+
+        assertThat(index.sourcesActivatedBy(Arrays.asList("db.pro", "gui.web"))).containsOnly(both, notDemo, either);
+        assertThat(index.sourcesActivatedBy(Arrays.asList("db.demo", "gui.pro"))).containsOnly(either);
+
+        ProfileRegistry profiles = ProfileRegistry.of(Arrays.asList("db.pro", "db.demo", "gui.pro", "gui.web"));
+        ActivationPreview preview = ActivationPreview.of(profiles, index);
+        assertThat(preview.activatedSources(Arrays.asList("db.pro", "gui.pro"))).containsOnly(both, notDemo);
+        assertThat(preview.activatedCountsByKind(Arrays.asList("db.pro", "gui.web")))
+                .containsEntry(ProfileSource.Kind.CLASS, 1).containsEntry(ProfileSource.Kind.XML_FILE, 1);
+        assertThat(preview.activatesAnything(Collections.singleton("db.demo"))).isTrue();
+    }
+
+    @Test
+    public void parsesItsStringRepresentation() {
+        ProfileSource method = ProfileSource.ofMethod("a.Configuration", "bean");
+        ProfileSource xmlFile = ProfileSource.ofXmlFile("jar:file:/app.jar!/wonderland-app.xml");
+
+        assertThat(ProfileSource.parse(method.toString())).isEqualTo(method);
+        assertThat(ProfileSource.parse(xmlFile.toString())).isEqualTo(xmlFile);
+    }
+}
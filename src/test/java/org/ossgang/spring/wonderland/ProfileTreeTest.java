@@ -0,0 +1,61 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProfileTreeTest {
+
+    private final ProfileRegistry registry = ProfileRegistry.of(Arrays.asList("accelerator.rf.pro",
+            "accelerator.rf.demo", "accelerator.vacuum.pro", "accelerator.vacuum.gauge.pro", "gui", "gui.pro",
+            "metrics.pro"));
+    private final ProfileTree tree = registry.getTree();
+
+    @Test
+    public void selectsAllProfilesOfSubtree() {
+        assertThat(tree.node("accelerator.vacuum").get().getProfiles()).extracting(WonderlandProfile::getName)
+                .containsExactly("accelerator.vacuum.gauge.pro", "accelerator.vacuum.pro");
+        assertThat(tree.node("gui").get().getProfiles()).extracting(WonderlandProfile::getName)
+                .containsExactly("gui", "gui.pro");
+        assertThat(tree.node("accelerator.other")).isEmpty();
+    }
+
+    @Test
+    public void selectsProfilesOfSubtreeByLastSegment() {
+        assertThat(tree.node("accelerator").get().getProfilesEndingWith("pro")).extracting(WonderlandProfile::getName)
+                .containsExactly("accelerator.rf.pro", "accelerator.vacuum.gauge.pro", "accelerator.vacuum.pro");
+        assertThat(tree.getRoot().getProfilesEndingWith("pro")).hasSize(5);
+        assertThat(tree.node("metrics").get().getProfilesEndingWith("demo")).isEmpty();
+    }
+
+    @Test
+    public void groupsVariantsByParentPath() {
+        assertThat(registry.getVariantsByParent()).containsOnlyKeys("accelerator.rf", "accelerator.vacuum",
+                "accelerator.vacuum.gauge", "gui", "metrics");
+        assertThat(registry.getVariantsByParent().get("accelerator.rf")).containsExactly("demo", "pro");
+
+        SelectionModel model = SelectionModel.of(registry, Arrays.asList("accelerator.rf.pro", "accelerator.vacuum.pro"),
+                true, true);
+        assertThat(model.getDefaultSelection()).containsExactly("accelerator.rf.pro", "accelerator.vacuum.pro");
+    }
+}
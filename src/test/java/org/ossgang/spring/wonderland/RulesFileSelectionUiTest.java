@@ -0,0 +1,72 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RulesFileSelectionUiTest {
+
+    private static final SelectionModel MODEL = SelectionModel.of(
+            ImmutableSet.of("db.pro", "db.demo", "gui.pro", "gui.demo", "standalone", "tracing"),
+            ImmutableSet.of("db.pro", "gui.pro", "tracing"), true);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void appliesRulesAndKeepsDefaultsOtherwise() throws IOException {
+        Path rules = rules("db=demo", "tracing=false", "standalone=true");
+
+        assertThat(new RulesFileSelectionUi(rules).select(MODEL))
+                .hasValueSatisfying(selection -> assertThat(selection)
+                        .containsExactlyInAnyOrder("db.demo", "gui.pro", "standalone"));
+    }
+
+    @Test
+    public void disablesCategories() throws IOException {
+        assertThat(new RulesFileSelectionUi(rules("gui=-")).select(MODEL))
+                .hasValueSatisfying(selection -> assertThat(selection).containsExactlyInAnyOrder("db.pro", "tracing"));
+    }
+
+    @Test
+    public void rejectsUnknownVariants() throws IOException {
+        RulesFileSelectionUi ui = new RulesFileSelectionUi(rules("db=staging"));
+
+        assertThatThrownBy(() -> ui.select(MODEL)).isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("staging");
+    }
+
+    private Path rules(String... lines) throws IOException {
+        Path rules = temporaryFolder.newFile("selection.properties").toPath();
+        Files.write(rules, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return rules;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SelectionStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<SelectionModel> shownSelections = new ArrayList<>();
+    private final WonderlandSelectionUi ui = model -> {
+        shownSelections.add(model);
+        return Optional.of(model.getDefaultSelection());
+    };
+
+    @After
+    public void clearMode() {
+        System.clearProperty(SelectionStore.MODE_PROPERTY);
+    }
+
+    @Test
+    public void storesLastSelectionPerApplication() throws Exception {
+        SelectionStore store = SelectionStore.inDirectory(temporaryFolder.getRoot().toPath(), "console");
+
+        assertThat(store.load()).isEmpty();
+        store.save(ImmutableList.of("db.pro", "tracing"));
+
+        assertThat(store.load()).contains(ImmutableList.of("db.pro", "tracing"));
+        assertThat(SelectionStore.inDirectory(temporaryFolder.getRoot().toPath(), "other").load()).isEmpty();
+        assertThat(temporaryFolder.getRoot().list()).containsExactly("console.selection");
+    }
+
+    @Test
+    public void rejectsApplicationIdsLeavingTheDirectory() {
+        assertThatThrownBy(() -> SelectionStore.inDirectory(temporaryFolder.getRoot().toPath(), "../console"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void reusesStoredSelectionWithoutAsking() {
+        SelectionStore store = store(ImmutableList.of("db.demo"));
+
+        List<String> selection = selector().withStoredSelection(store, SelectionStore.Mode.REUSE).selectOrExit();
+
+        assertThat(selection).containsExactly("db.demo");
+        assertThat(shownSelections).isEmpty();
+    }
+
+    @Test
+    public void asksIfStoredSelectionContainsUnknownProfiles() {
+        SelectionStore store = store(ImmutableList.of("db.test"));
+
+        List<String> selection = selector().withStoredSelection(store, SelectionStore.Mode.REUSE).selectOrExit();
+
+        assertThat(selection).containsExactly("db.pro");
+        assertThat(shownSelections).hasSize(1);
+        assertThat(store.load()).contains(ImmutableList.of("db.pro"));
+    }
+
+    @Test
+    public void prefillsSelectionFromStoreIfConfigured() {
+        SelectionStore store = store(ImmutableList.of("db.demo"));
+        System.setProperty(SelectionStore.MODE_PROPERTY, "prefill");
+
+        List<String> selection = selector().withStoredSelection(store, SelectionStore.Mode.REUSE).selectOrExit();
+
+        assertThat(selection).containsExactly("db.demo");
+        assertThat(shownSelections).hasSize(1);
+    }
+
+    private SelectionStore store(List<String> profiles) {
+        SelectionStore store = SelectionStore.inDirectory(temporaryFolder.getRoot().toPath(), "console");
+        store.save(profiles);
+        return store;
+    }
+
+    private WonderlandContextSelector selector() {
+        WonderlandProfileFinder finder = prefixes -> ImmutableSet.of("db.pro", "db.demo");
+        return WonderlandContextSelector.create(Collections.singleton("any"), Collections.singleton(finder))
+                .defaultProProfiles().withSelectionUi(ui);
+    }
+}
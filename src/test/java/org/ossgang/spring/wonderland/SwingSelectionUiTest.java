@@ -0,0 +1,52 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SwingSelectionUiTest {
+
+    @Test
+    public void showsFailedDiscoveryAndLetsTheDialogBeClosed() {
+        WonderlandProfileFinder finder = prefixes -> ImmutableSet.of("db.pro", "db.demo", "gui.pro");
+        WonderlandProfileFinder failingFinder = prefixes -> {
+            throw new IllegalStateException("broken index");
+        };
+        ProgressiveSelection selection = WonderlandContextSelector
+                .create(Collections.singleton("any"), Arrays.asList(finder, failingFinder)).progressiveSelection();
+        assertThatThrownBy(selection::awaitModel).hasMessage("broken index");
+
+        SwingSelectionUi.SelectionPanel panel = new SwingSelectionUi.SelectionPanel(selection);
+        panel.refresher.start();
+        panel.refresh.run();
+
+        assertThat(panel.refresher.isRunning()).isFalse();
+        assertThat(panel.closeButton.isEnabled()).isTrue();
+        assertThat(panel.activationLabel.getText()).contains("broken index");
+        assertThat(panel.tableModel.getRowCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.io.ByteStreams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WatchingProfileFinderTest {
+
+    private static final String FIXTURE_CLASS = "org/ossgang/spring/wonderland/fixtures/ProfiledConfiguration.class";
+    private static final List<String> SCAN_LOCATIONS = Arrays
+            .asList("org.ossgang.spring.wonderland.fixtures", "classpath*:**/wonderland-*.xml");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final BlockingQueue<List<Set<String>>> changes = new LinkedBlockingQueue<>();
+    private Path root;
+    private URLClassLoader classLoader;
+    private WatchingProfileFinder finder;
+
+    @Before
+    public void setUp() throws IOException {
+        root = temporaryFolder.getRoot().toPath();
+        classLoader = new URLClassLoader(new URL[] { root.toUri().toURL() }, null);
+        finder = new WatchingProfileFinder(classLoader);
+        finder.addListener((added, removed) -> changes.add(Arrays.asList(added, removed)));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        finder.close();
+        classLoader.close();
+    }
+
+    @Test
+    public void tracksAddedAndRemovedClassFiles() throws Exception {
+        assertThat(finder.discoverSpringProfilesIn(SCAN_LOCATIONS)).isEmpty();
+
+        Path classFile = root.resolve(FIXTURE_CLASS);
+        Files.createDirectories(classFile.getParent());
+        try (InputStream content = getClass().getClassLoader().getResourceAsStream(FIXTURE_CLASS)) {
+            Files.write(classFile, ByteStreams.toByteArray(content));
+        }
+        assertThat(nextChange().get(0)).contains("fixture.pro", "fixture.demo");
+        assertThat(finder.discoverSpringProfilesIn(SCAN_LOCATIONS)).contains("fixture.pro");
+
+        Files.delete(classFile);
+        assertThat(nextChange().get(1)).contains("fixture.pro", "fixture.demo");
+        assertThat(finder.discoverSpringProfilesIn(SCAN_LOCATIONS)).isEmpty();
+    }
+
+    @Test
+    public void waitsForClassFilesStillBeingWritten() throws Exception {
+        Path classFile = root.resolve(FIXTURE_CLASS);
+        Files.createDirectories(classFile.getParent());
+        assertThat(finder.discoverSpringProfilesIn(SCAN_LOCATIONS)).isEmpty();
+
+        byte[] content;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(FIXTURE_CLASS)) {
+            content = ByteStreams.toByteArray(in);
+        }
+        for (int length : new int[] { 4, 10, 30, content.length / 2 }) {
+            Files.write(classFile, Arrays.copyOf(content, length));
+            Thread.sleep(200);
+        }
+        assertThat(changes).isEmpty();
+
+        Files.write(classFile, content);
+        assertThat(nextChange().get(0)).contains("fixture.pro", "fixture.demo");
+        assertThat(finder.discoverSpringProfilesIn(SCAN_LOCATIONS)).contains("fixture.pro");
+    }
+
+    @Test
+    public void reanalyzesChangedXmlFiles() throws Exception {
+        Path xmlFile = root.resolve("wonderland-watched.xml");
+        writeBeans(xmlFile, "watched.pro");
+        assertThat(finder.discoverSpringProfilesIn(SCAN_LOCATIONS)).containsOnly("watched.pro");
+
+        writeBeans(xmlFile, "watched.demo");
+        List<Set<String>> change = nextChange();
+        assertThat(change.get(0)).containsOnly("watched.demo");
+        assertThat(change.get(1)).containsOnly("watched.pro");
+    }
+
+    private List<Set<String>> nextChange() throws InterruptedException {
+        List<Set<String>> change = changes.poll(10, TimeUnit.SECONDS);
+        assertThat(change).as("profile change").isNotNull();
+        return change;
+    }
+
+    private static void writeBeans(Path xmlFile, String profile) throws IOException {
+        Files.write(xmlFile, Arrays.asList("<beans xmlns=\"http://www.springframework.org/schema/beans\">",
+                "  <beans profile=\"" + profile + "\"/>", "</beans>"), StandardCharsets.UTF_8);
+    }
+}
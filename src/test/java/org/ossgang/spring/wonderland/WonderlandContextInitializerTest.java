@@ -0,0 +1,100 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Test;
+import org.ossgang.spring.wonderland.initializer.ImportedBeans;
+import org.ossgang.spring.wonderland.initializer.ProConfiguration;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WonderlandContextInitializerTest {
+
+    private static final List<String> LOCATIONS = Arrays.asList("org.ossgang.spring.wonderland.initializer",
+            "classpath*:org/ossgang/spring/wonderland/initializer/*-beans.xml");
+
+    private final WonderlandContextSelector selector = WonderlandContextSelector
+            .create(LOCATIONS, Arrays.asList(new ClassFileProfileFinder(), new XmlProfileFinder()));
+
+    @Test
+    public void activatesSelectionAndRegistersDeclaringSourcesWithoutScanning() {
+        try (AnnotationConfigApplicationContext context = selector
+                .withSelectionUi(model -> Optional.of(Arrays.asList("initializer.pro", "initializer.xml")))
+                .createApplicationContext()) {
+            assertThat(context.getEnvironment().getActiveProfiles())
+                    .containsExactly("initializer.pro", "initializer.xml");
+            assertThat(context.containsBean("proBean")).isTrue();
+            assertThat(context.containsBean("defaultBean")).isTrue();
+            assertThat(context.containsBean("xmlBean")).isTrue();
+            assertThat(context.containsBean("demoBean")).isFalse();
+        }
+    }
+
+    @Test
+    public void keepsProfilesConfiguredInTheEnvironment() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().setActiveProfiles("initializer.demo", "initializer.other");
+            selector.withSelectionUi(model -> {
+                throw new AssertionError("no selection expected");
+            }).contextInitializer().initialize(context);
+            context.refresh();
+
+            assertThat(context.containsBean("demoBean")).isTrue();
+            assertThat(context.containsBean("defaultBean")).isFalse();
+            assertThat(context.containsBean("proBean")).isFalse();
+        }
+    }
+
+    @Test
+    public void registersClassesOnlyDeclaringProfiledMethodsIfTheyAreComponents() {
+        WonderlandContextSelector importedSelection = selector
+                .withSelectionUi(model -> Optional.of(Arrays.asList("initializer.demo", "initializer.imported")));
+        try (AnnotationConfigApplicationContext context = importedSelection.createApplicationContext()) {
+            assertThat(context.containsBean("demoBean")).isTrue();
+            assertThat(context.containsBean("importedBean")).isFalse();
+        }
+        try (AnnotationConfigApplicationContext context = importedSelection
+                .createApplicationContext(ImportedBeans.class)) {
+            assertThat(context.containsBean("importedBean")).isTrue();
+        }
+    }
+
+    @Test
+    public void skipsSourcesTheApplicationAlreadyRegistered() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.setAllowBeanDefinitionOverriding(false);
+            selector.withSelectionUi(model -> Optional.of(Arrays.asList("initializer.pro", "initializer.xml")))
+                    .contextInitializer().initialize(context);
+            context.register(ProConfiguration.class);
+            new XmlBeanDefinitionReader(context)
+                    .loadBeanDefinitions("classpath:org/ossgang/spring/wonderland/initializer/initializer-beans.xml");
+            context.refresh();
+
+            assertThat(context.containsBean("proBean")).isTrue();
+            assertThat(context.containsBean("xmlBean")).isTrue();
+            assertThat(context.containsBean("defaultBean")).isTrue();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WonderlandContextSelectorTest {
+
+    private static final String SPRING_PROFILES_ACTIVE = "spring.profiles.active";
+
+    private final AtomicInteger discoveries = new AtomicInteger();
+    private final WonderlandProfileFinder finder = prefixes -> {
+        discoveries.incrementAndGet();
+        return ImmutableSet.of("db.pro", "db.demo", "gui.pro", "standalone");
+    };
+
+    @After
+    public void clearActiveProfiles() {
+        System.clearProperty(SPRING_PROFILES_ACTIVE);
+    }
+
+    @Test
+    public void doesNotDiscoverProfilesIfAlreadyConfigured() {
+        System.setProperty(SPRING_PROFILES_ACTIVE, "db.pro");
+
+        WonderlandContextSelector.create(Collections.singleton("any"), Collections.singleton(finder))
+                .defaultProProfiles().withoutDisablingOfCategories().showSelectionIfUnconfigured();
+
+        assertThat(discoveries).hasValue(0);
+        assertThat(System.getProperty(SPRING_PROFILES_ACTIVE)).isEqualTo("db.pro");
+    }
+
+    @Test
+    public void offersProfilesBeforeDiscoveryCompleted() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        WonderlandProfileFinder slowFinder = prefixes -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ImmutableSet.of("net.pro");
+        };
+        List<String> offeredBeforeCompletion = new ArrayList<>();
+        WonderlandSelectionUi ui = new WonderlandSelectionUi() {
+            @Override
+            public Optional<List<String>> select(SelectionModel model) {
+                throw new AssertionError("the selection should not wait for the discovery");
+            }
+
+            @Override
+            public Optional<List<String>> select(ProgressiveSelection selection) {
+                while (selection.currentModel().getCategories().isEmpty()) {
+                    Thread.yield();
+                }
+                assertThat(selection.isComplete()).isFalse();
+                selection.currentModel().getCategories().forEach(category -> offeredBeforeCompletion
+                        .add(category.getName()));
+                release.countDown();
+                return Optional.of(selection.awaitModel().getDefaultSelection());
+            }
+        };
+
+        List<String> selection = WonderlandContextSelector
+                .create(Collections.singleton("any"), Arrays.asList(finder, slowFinder))
+                .defaultProProfiles().withoutDisablingOfCategories().withSelectionUi(ui).selectOrExit();
+
+        assertThat(offeredBeforeCompletion).containsExactly("db", "gui");
+        assertThat(selection).containsExactly("db.pro", "gui.pro", "net.pro");
+    }
+
+    @Test
+    public void keepsProfilesFoundBeforeTheDiscoveryFailedAndReportsTheFailure() {
+        WonderlandProfileFinder failingFinder = prefixes -> {
+            throw new IllegalStateException("broken index");
+        };
+        ProgressiveSelection selection = WonderlandContextSelector
+                .create(Collections.singleton("any"), Arrays.asList(finder, failingFinder)).progressiveSelection();
+
+        assertThatThrownBy(selection::awaitModel).isInstanceOf(IllegalStateException.class)
+                .hasMessage("broken index");
+        assertThat(selection.isComplete()).isTrue();
+        assertThat(selection.getFailure()).hasValueSatisfying(failure -> assertThat(failure)
+                .hasMessage("broken index"));
+        assertThat(selection.currentModel().getCategories()).extracting(category -> category.getName())
+                .containsExactly("db", "gui");
+        assertThat(selection.getActivationPreview()).isEmpty();
+    }
+
+    @Test
+    public void acceptsSelectionActivatingNoProfileDependentSource() {
+        WonderlandContextSelector selector = WonderlandContextSelector
+                .create(Collections.singleton("org.ossgang.spring.wonderland.initializer"),
+                        Collections.singleton(new ClassFileProfileFinder()))
+                .withSelectionUi(model -> Optional.of(Collections.singletonList("initializer.other")));
+
+        List<String> selection = selector.selectOrExit();
+
+        assertThat(selector.getActivationPreview().activatesAnything(selection)).isFalse();
+        assertThat(selection).containsExactly("initializer.other");
+    }
+
+    @Test
+    public void discoversProfilesOnceOnFirstUse() {
+        WonderlandContextSelector selector = WonderlandContextSelector
+                .create(Collections.singleton("any"), Collections.singleton(finder));
+
+        selector.selectProProfiles();
+        selector.selectDemoProfiles();
+
+        assertThat(discoveries).hasValue(1);
+        assertThat(System.getProperty(SPRING_PROFILES_ACTIVE)).isEqualTo("db.demo");
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XmlProfileFinderTest {
+
+    private static final String TEST_LOCATION = "classpath*:org/ossgang/spring/wonderland/xml/wonderland-*.xml";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void discoversNestedAndImportedProfiles() {
+        Set<String> profiles = new XmlProfileFinder().discoverSpringProfilesIn(Collections.singleton(TEST_LOCATION));
+
+        assertThat(profiles).containsOnly("xml.pro", "xml.demo", "xml.nested", "!xml.other", "xml.imported");
+    }
+
+    @Test
+    public void findsFilesOfTheContextClassLoaderByDefault() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Files.write(root.resolve("wonderland-context.xml"),
+                ("<beans xmlns=\"http://www.springframework.org/schema/beans\">"
+                        + "<beans profile=\"context.pro\"/></beans>").getBytes(StandardCharsets.UTF_8));
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        try (URLClassLoader contextClassLoader = new URLClassLoader(new URL[] { root.toUri().toURL() }, original)) {
+            thread.setContextClassLoader(contextClassLoader);
+            Set<String> profiles = new XmlProfileFinder()
+                    .discoverSpringProfilesIn(Collections.singleton("classpath*:wonderland-context.xml"));
+
+            assertThat(profiles).containsOnly("context.pro");
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+
+    @Test
+    public void ignoresNonClasspathLocations() {
+        Set<String> profiles = new XmlProfileFinder().discoverSpringProfilesIn(Collections.singleton("org.ossgang"));
+
+        assertThat(profiles).isEmpty();
+    }
+}
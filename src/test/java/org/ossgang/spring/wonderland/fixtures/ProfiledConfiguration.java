@@ -0,0 +1,40 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland.fixtures;
+
+import org.springframework.context.annotation.Profile;
+
+@Profile("fixture.pro")
+public class ProfiledConfiguration {
+
+    public static final String INITIALIZED_PROPERTY = "wonderland.fixture.initialized";
+
+    static {
+        System.setProperty(INITIALIZED_PROPERTY, "true");
+    }
+
+    @Profile({"fixture.demo", "!fixture.other"})
+    public Object demoBean() {
+        return new Object();
+    }
+
+    public Object unprofiledBean() {
+        return new Object();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * @formatter:off
+ * Copyright (c) 2008-2020, CERN. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * @formatter:on
+ */
+
+package org.ossgang.spring.wonderland.matrix;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+@Configuration
+public class MatrixConfiguration {
+
+    @Bean
+    @Profile("matrix.pro")
+    public String matrixBean() {
+        return "pro";
+    }
+
+    @Bean
+    @Profile("matrix.demo")
+    public String demoMatrixBean() {
+        return "demo";
+    }
+
+    @Bean
+    @Profile("matrix.broken & store.file")
+    public String brokenMatrixBean() {
+        throw new IllegalStateException("broken with a file store");
+    }
+
+    @Bean
+    @Profile("store.memory | store.file")
+    public String storeBean() {
+        return "store";
+    }
+}